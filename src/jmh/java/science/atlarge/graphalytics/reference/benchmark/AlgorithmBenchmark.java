@@ -0,0 +1,93 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import science.atlarge.graphalytics.domain.algorithms.BreadthFirstSearchParameters;
+import science.atlarge.graphalytics.domain.algorithms.CommunityDetectionLPParameters;
+import science.atlarge.graphalytics.domain.algorithms.PageRankParameters;
+import science.atlarge.graphalytics.domain.algorithms.SingleSourceShortestPathsParameters;
+import science.atlarge.graphalytics.reference.algorithms.bfs.BreadthFirstSearchJob;
+import science.atlarge.graphalytics.reference.algorithms.cdlp.CommunityDetectionLPJob;
+import science.atlarge.graphalytics.reference.algorithms.lcc.LocalClusteringCoefficientJob;
+import science.atlarge.graphalytics.reference.algorithms.pr.PageRankJob;
+import science.atlarge.graphalytics.reference.algorithms.sssp.SingleSourceShortestPathJob;
+import science.atlarge.graphalytics.reference.algorithms.wcc.WeaklyConnectedComponentsJob;
+import science.atlarge.graphalytics.reference.graph.VertexValues;
+
+/**
+ * Benchmarks the computation of every algorithm on a graph that is already loaded, with the sequential and the
+ * parallel implementation of each job. Traversals start at the vertex with the lowest identifier.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AlgorithmBenchmark {
+
+	private static final int NUM_ITERATIONS = 10;
+	private static final float DAMPING_FACTOR = 0.85f;
+
+	@Param({"false", "true"})
+	public boolean parallel;
+
+	@Benchmark
+	public VertexValues bfs(SyntheticGraphState state) {
+		long source = state.graph.getVertexId(0);
+		return new BreadthFirstSearchJob(state.graph, new BreadthFirstSearchParameters(source), parallel).run();
+	}
+
+	@Benchmark
+	public VertexValues cdlp(SyntheticGraphState state) {
+		return new CommunityDetectionLPJob(state.graph, new CommunityDetectionLPParameters(NUM_ITERATIONS), parallel)
+				.run();
+	}
+
+	@Benchmark
+	public VertexValues lcc(SyntheticGraphState state) {
+		return new LocalClusteringCoefficientJob(state.graph, parallel).run();
+	}
+
+	@Benchmark
+	public VertexValues pr(SyntheticGraphState state) {
+		return new PageRankJob(state.graph, new PageRankParameters(DAMPING_FACTOR, NUM_ITERATIONS), parallel).run();
+	}
+
+	@Benchmark
+	public VertexValues sssp(SyntheticGraphState state) {
+		long source = state.graph.getVertexId(0);
+		return new SingleSourceShortestPathJob(state.graph, new SingleSourceShortestPathsParameters(source), parallel,
+				0.0).run();
+	}
+
+	@Benchmark
+	public VertexValues wcc(SyntheticGraphState state) {
+		return new WeaklyConnectedComponentsJob(state.graph, parallel).run();
+	}
+}
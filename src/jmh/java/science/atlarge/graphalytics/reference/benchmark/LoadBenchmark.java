@@ -0,0 +1,74 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import science.atlarge.graphalytics.reference.graph.CsrGraph;
+import science.atlarge.graphalytics.reference.graph.CsrGraphFile;
+import science.atlarge.graphalytics.reference.graph.CsrGraphLoader;
+
+/**
+ * Benchmarks the ways a graph is loaded by the platform: parsing the vertex and edge files, reading the cached
+ * binary graph into the heap, and mapping the cached binary graph into memory.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class LoadBenchmark {
+
+	@State(Scope.Benchmark)
+	public static class CachedGraph {
+
+		Path cacheFile;
+
+		@Setup(Level.Trial)
+		public void setUp(SyntheticGraphState state) throws IOException {
+			cacheFile = CsrGraphFile.getCachePath(state.edgeFilePath);
+			CsrGraphFile.write(state.graph, cacheFile, state.vertexFilePath, state.edgeFilePath);
+		}
+	}
+
+	@Benchmark
+	public CsrGraph parse(SyntheticGraphState state) throws IOException {
+		return CsrGraphLoader.load(state.vertexFilePath, state.edgeFilePath, state.directed, true);
+	}
+
+	@Benchmark
+	public CsrGraph readCache(SyntheticGraphState state, CachedGraph cache) throws IOException {
+		return CsrGraphFile.read(cache.cacheFile, state.vertexFilePath, state.edgeFilePath);
+	}
+
+	@Benchmark
+	public CsrGraph mapCache(SyntheticGraphState state, CachedGraph cache) throws IOException {
+		return CsrGraphFile.map(cache.cacheFile, state.vertexFilePath, state.edgeFilePath);
+	}
+}
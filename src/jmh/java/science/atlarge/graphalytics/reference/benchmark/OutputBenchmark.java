@@ -0,0 +1,80 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import science.atlarge.graphalytics.domain.algorithms.BreadthFirstSearchParameters;
+import science.atlarge.graphalytics.domain.algorithms.PageRankParameters;
+import science.atlarge.graphalytics.reference.algorithms.bfs.BreadthFirstSearchJob;
+import science.atlarge.graphalytics.reference.algorithms.pr.PageRankJob;
+import science.atlarge.graphalytics.reference.graph.DoubleVertexValues;
+import science.atlarge.graphalytics.reference.graph.LongVertexValues;
+import science.atlarge.graphalytics.reference.output.VertexOutputWriter;
+
+/**
+ * Benchmarks writing the output of an algorithm, with integer values (the depths found by a breadth-first search)
+ * and with floating-point values (the ranks computed by PageRank), to a single file or to a number of shards.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class OutputBenchmark {
+
+	@Param({"1", "8"})
+	public int shards;
+
+	private VertexOutputWriter writer;
+	private Path outputPath;
+	private LongVertexValues longValues;
+	private DoubleVertexValues doubleValues;
+
+	@Setup(Level.Trial)
+	public void setUp(SyntheticGraphState state) {
+		writer = new VertexOutputWriter(shards);
+		outputPath = state.directory.resolve("output");
+		long source = state.graph.getVertexId(0);
+		longValues = new BreadthFirstSearchJob(state.graph, new BreadthFirstSearchParameters(source)).run();
+		doubleValues = new PageRankJob(state.graph, new PageRankParameters(0.85f, 10)).run();
+	}
+
+	@Benchmark
+	public void writeLongs() throws IOException {
+		writer.write(outputPath, longValues);
+	}
+
+	@Benchmark
+	public void writeDoubles() throws IOException {
+		writer.write(outputPath, doubleValues);
+	}
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.benchmark;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import science.atlarge.graphalytics.reference.graph.CsrGraphLoader;
+import science.atlarge.graphalytics.reference.graph.HeapCsrGraph;
+import science.atlarge.graphalytics.reference.graph.SyntheticGraphGenerator;
+import science.atlarge.graphalytics.reference.graph.SyntheticGraphGenerator.Topology;
+import science.atlarge.graphalytics.reference.util.Parallel;
+
+/**
+ * Generated weighted graph that is shared by all benchmarks with the same parameters. The graph is written to a
+ * vertex file and an edge file in a temporary directory, from which it is loaded once per trial. The directory,
+ * including any files that benchmarks write into it, is deleted after the trial. The state also owns the shared
+ * fork-join pool, which runs from the start to the end of the trial.
+ */
+@State(Scope.Benchmark)
+public class SyntheticGraphState {
+
+	private static final long SEED = 42L;
+
+	@Param({"100000", "1000000"})
+	public int vertices;
+
+	@Param({"4", "32"})
+	public int averageDegree;
+
+	@Param({"false", "true"})
+	public boolean directed;
+
+	@Param({"RMAT", "UNIFORM", "GRID"})
+	public Topology topology;
+
+	/**
+	 * Number of worker threads of the shared pool, e.g. "-p threads=1,2,4,8" for a scaling curve.
+	 */
+	@Param({"0"})
+	public int threads;
+
+	Path directory;
+	String vertexFilePath;
+	String edgeFilePath;
+	HeapCsrGraph graph;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		Parallel.startPool(threads);
+		directory = Files.createTempDirectory("reference-benchmark");
+		Path vertexFile = directory.resolve("graph.v");
+		Path edgeFile = directory.resolve("graph.e");
+		vertexFilePath = vertexFile.toString();
+		edgeFilePath = edgeFile.toString();
+
+		new SyntheticGraphGenerator(topology, vertices, averageDegree, directed, true, SEED)
+				.write(vertexFile, edgeFile);
+		graph = CsrGraphLoader.load(vertexFilePath, edgeFilePath, directed, true);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		graph = null;
+		Parallel.shutdown();
+		Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) throws IOException {
+				Files.delete(file);
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException {
+				if (e != null) {
+					throw e;
+				}
+				Files.delete(dir);
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+}
@@ -17,8 +17,8 @@ package science.atlarge.graphalytics.reference;
 
 import java.io.*;
 import java.math.BigDecimal;
+import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.Map;
 
 import org.apache.commons.io.output.TeeOutputStream;
 import science.atlarge.graphalytics.domain.algorithms.*;
@@ -40,14 +40,19 @@ import science.atlarge.graphalytics.reference.algorithms.lcc.LocalClusteringCoef
 import science.atlarge.graphalytics.reference.algorithms.pr.PageRankJob;
 import science.atlarge.graphalytics.reference.algorithms.sssp.SingleSourceShortestPathJob;
 import science.atlarge.graphalytics.reference.algorithms.wcc.WeaklyConnectedComponentsJob;
-import science.atlarge.graphalytics.util.graph.PropertyGraph;
-import science.atlarge.graphalytics.util.graph.PropertyGraphParser;
-import science.atlarge.graphalytics.util.graph.PropertyGraphParser.ValueParser;
+import science.atlarge.graphalytics.reference.graph.CsrGraph;
+import science.atlarge.graphalytics.reference.graph.CsrGraphFile;
+import science.atlarge.graphalytics.reference.graph.CsrGraphLoader;
+import science.atlarge.graphalytics.reference.graph.HeapCsrGraph;
+import science.atlarge.graphalytics.reference.graph.SyntheticGraphGenerator;
+import science.atlarge.graphalytics.reference.graph.VertexValues;
+import science.atlarge.graphalytics.reference.output.VertexOutputWriter;
+import science.atlarge.graphalytics.reference.util.Parallel;
+import science.atlarge.graphalytics.reference.util.PhaseTimer;
+import science.atlarge.graphalytics.reference.util.WorkCounters;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import static java.nio.file.Files.readAllBytes;
-
 /**
  * Reference implementation of the Graphalytics benchmark.
  *
@@ -56,19 +61,71 @@ import static java.nio.file.Files.readAllBytes;
 public class ReferencePlatform implements Platform {
 
 	private static final Logger LOG = LogManager.getLogger();
+
+	private static final String LOAD_PHASE = "load";
+	private static final String CONVERSION_PHASE = "conversion";
+	private static final String ALGORITHM_PHASE = "algorithm";
+	private static final String OUTPUT_PHASE = "output";
+
+	/**
+	 * Upper bound on the average degree of the warm-up graph, which keeps the warm-up short on dense graphs.
+	 */
+	private static final int MAX_WARMUP_DEGREE = 32;
+	private static final long WARMUP_SEED = 42L;
+
 	private static PrintStream sysOut;
 	private static PrintStream sysErr;
 
+	private final ReferencePlatformConfiguration configuration = ReferencePlatformConfiguration.load();
+
+	/**
+	 * Phase durations and work counters of the current benchmark run, recorded by run and published by finalize.
+	 */
+	private PhaseTimer phaseTimer;
+	private WorkCounters workCounters;
+
 	@Override
 	public void verifySetup() {}
 
 	@Override
 	public LoadedGraph loadGraph(FormattedGraph formattedGraph) throws Exception {
+		// Graphs are loaded by the driver process, which owns the pool only while loading
+		startPool();
+		try {
+			return loadAndCacheGraph(formattedGraph);
+		} finally {
+			Parallel.shutdown();
+		}
+	}
+
+	private LoadedGraph loadAndCacheGraph(FormattedGraph formattedGraph) throws Exception {
+		// Convert the graph to a binary file once, so that every benchmark run can skip parsing the text files
+		Path cachePath = CsrGraphFile.getCachePath(formattedGraph.getEdgeFilePath());
+		if (CsrGraphFile.isUpToDate(cachePath, formattedGraph.getVertexFilePath(), formattedGraph.getEdgeFilePath())) {
+			LOG.info("Using binary graph cache: " + cachePath + ".");
+		} else {
+			HeapCsrGraph graph = parseGraph(formattedGraph);
+			try {
+				CsrGraphFile.write(graph, cachePath, formattedGraph.getVertexFilePath(),
+						formattedGraph.getEdgeFilePath());
+				LOG.info("Created binary graph cache: " + cachePath + ".");
+			} catch (IOException e) {
+				LOG.warn("Failed to create binary graph cache: " + cachePath + ".", e);
+			}
+		}
+		// The driver process only writes the cache; every benchmark run reads it in its own process
 		return new LoadedGraph(formattedGraph, formattedGraph.getVertexFilePath(), formattedGraph.getEdgeFilePath());
 	}
 
 	@Override
-	public void deleteGraph(LoadedGraph loadedGraph) {}
+	public void deleteGraph(LoadedGraph loadedGraph) {
+		Path cachePath = CsrGraphFile.getCachePath(loadedGraph.getFormattedGraph().getEdgeFilePath());
+		try {
+			Files.deleteIfExists(cachePath);
+		} catch (IOException e) {
+			LOG.warn("Failed to delete binary graph cache: " + cachePath + ".", e);
+		}
+	}
 
 	@Override
 	public void prepare(RunSpecification runSpecification) {}
@@ -77,9 +134,19 @@ public class ReferencePlatform implements Platform {
 	public void startup(RunSpecification runSpecification) {
 		BenchmarkRunSetup benchmarkRunSetup = runSpecification.getBenchmarkRunSetup();
 		startBenchmarkLogging(benchmarkRunSetup.getLogDir().resolve("platform").resolve("driver.logs"));
+
+		// The benchmark run owns the pool until finalize; all workers start before the run, so that thread creation
+		// is not timed
+		startPool();
+		LOG.info("Started fork-join pool with " + Parallel.getParallelism() + " threads.");
+
+		// Warm up in the process that runs the benchmark, so that run() executes compiled code
+		if (configuration.getWarmupVertices() > 0 && configuration.getWarmupIterations() > 0) {
+			warmUp(runSpecification.getBenchmarkRun(),
+					runSpecification.getRuntimeSetup().getLoadedGraph().getFormattedGraph());
+		}
 	}
 
-	@SuppressWarnings("unchecked")
 	@Override
 	public void run(RunSpecification runSpecification) throws PlatformExecutionException {
 
@@ -89,125 +156,246 @@ public class ReferencePlatform implements Platform {
 
 		Algorithm algorithm = benchmarkRun.getAlgorithm();
 		Object parameters = benchmarkRun.getAlgorithmParameters();
-		Map<Long, ? extends Object> output;
+		PhaseTimer timer = new PhaseTimer();
+		WorkCounters counters = new WorkCounters();
+		phaseTimer = timer;
+		workCounters = counters;
 
-		PropertyGraph graph = null;
+		CsrGraph graph;
 		try {
-			graph = convertToPropertyGraph(runtimeSetup.getLoadedGraph().getFormattedGraph());
+			graph = convertToCsrGraph(runtimeSetup.getLoadedGraph().getFormattedGraph(), timer);
 		} catch (Exception e) {
-			e.printStackTrace();
+			throw new PlatformExecutionException("Failed to load graph", e);
 		}
 
-		LOG.info("Processing starts at: " + System.currentTimeMillis());
-		switch (algorithm) {
-			case BFS:
-				output = new BreadthFirstSearchJob((PropertyGraph<Void, Void>) graph, (BreadthFirstSearchParameters)parameters).run();
-				break;
-			case CDLP:
-				output = new CommunityDetectionLPJob((PropertyGraph<Void, Void>) graph, (CommunityDetectionLPParameters)parameters).run();
-				break;
-			case WCC:
-				output = new WeaklyConnectedComponentsJob(graph).run();
-				break;
-			case PR:
-				output = new PageRankJob((PropertyGraph<Void, Void>) graph, (PageRankParameters)parameters).run();
-				break;
-			case LCC:
-				output = new LocalClusteringCoefficientJob(graph).run();
-				break;
-			case SSSP:
-				output = new SingleSourceShortestPathJob((PropertyGraph<Void, Double>) graph, (SingleSourceShortestPathsParameters)parameters).run();
-				break;
-			default:
-				throw new PlatformExecutionException("Unsupported algorithm: " + algorithm);
+		if (benchmarkRunSetup.isOutputRequired() && configuration.getOutputShards() > 1) {
+			LOG.warn("Writing output to a directory of " + configuration.getOutputShards()
+					+ " part files, which Graphalytics output validation does not read.");
 		}
 
+		LOG.info("Processing starts at: " + System.currentTimeMillis());
+		long algorithmStart = timer.start();
+		VertexValues output = runJob(algorithm, parameters, graph, timer, counters);
+		timer.record(ALGORITHM_PHASE, algorithmStart);
+
 		if (benchmarkRunSetup.isOutputRequired()) {
+			long outputStart = timer.start();
 			try {
-				String outputFile = benchmarkRunSetup.getOutputDir().resolve(benchmarkRun.getName()).toAbsolutePath().toString();
-				writeOutput(outputFile, output);
+				Path outputFile = benchmarkRunSetup.getOutputDir().resolve(benchmarkRun.getName()).toAbsolutePath();
+				new VertexOutputWriter(configuration.getOutputShards()).write(outputFile, output);
 			} catch(IOException e) {
 				throw new PlatformExecutionException("An error while writing to output file", e);
 			}
+			timer.record(OUTPUT_PHASE, outputStart);
 		}
 		LOG.info("Processing ends at: " + System.currentTimeMillis());
 	}
 
 	@Override
 	public BenchmarkMetrics finalize(RunSpecification runSpecification) {
-		stopPlatformLogging();
-		BenchmarkRunSetup benchmarkRunSetup = runSpecification.getBenchmarkRunSetup();
-		Path path = benchmarkRunSetup.getLogDir().resolve("platform").resolve("driver.logs");
-		String logs = null;
-		try {
-			logs = new String(readAllBytes(path));
-		} catch (IOException e) {
-			e.printStackTrace();
-			throw new IllegalStateException("Can't read file at " + path);
+		BenchmarkMetrics metrics = new BenchmarkMetrics();
+		PhaseTimer timer = phaseTimer;
+		WorkCounters counters = workCounters;
+		phaseTimer = null;
+		workCounters = null;
+		if (timer != null) {
+			// Run statistics only go to the driver log, Graphalytics receives the processing time as its metric
+			for (String phase : timer.getPhases()) {
+				LOG.info("Phase " + phase + " took " + timer.getNanos(phase) + " ns.");
+			}
+			for (String counter : counters.getNames()) {
+				LOG.info("Counter " + counter + ": " + counters.getValue(counter) + ".");
+			}
+			long algorithmNanos = timer.getNanos(ALGORITHM_PHASE);
+			if (algorithmNanos > 0) {
+				double teps = counters.getValue(WorkCounters.EDGES_SCANNED) * 1e9 / algorithmNanos;
+				LOG.info("Traversed edges per second: " + String.format("%.0f", teps) + ".");
+			}
+
+			// Processing time spans the algorithm and writing its output
+			long processingNanos = timer.getNanos(ALGORITHM_PHASE) + timer.getNanos(OUTPUT_PHASE);
+			metrics.setProcessingTime(new BenchmarkMetric(BigDecimal.valueOf(processingNanos, 9), "s"));
 		}
+		Parallel.shutdown();
+		stopPlatformLogging();
+		return metrics;
+	}
+
+	@Override
+	public void terminate(RunSpecification runSpecification) {
 
-		Long startTime = null;
-		Long endTime = null;
+	}
 
-		for (String line : logs.split("\n")) {
-			try {
-				if (line.contains("Processing starts at: ")) {
-					String[] lineParts = line.split("\\s+");
-					startTime = Long.parseLong(lineParts[lineParts.length - 1]);
-				}
-
-				if (line.contains("Processing ends at: ")) {
-					String[] lineParts = line.split("\\s+");
-					endTime = Long.parseLong(lineParts[lineParts.length - 1]);
-				}
-			} catch (Exception e) {
-				LOG.error(String.format("Cannot parse line: %s", line, e));
+	/**
+	 * Starts the shared pool with the configured number of threads and chunk size.
+	 */
+	private void startPool() {
+		Parallel.setChunkSize(configuration.getChunkSize());
+		Parallel.startPool(configuration.getNumberOfThreads());
+	}
+
+	/**
+	 * Runs the job of a benchmark run repeatedly on a generated R-MAT graph with the direction, weights and average
+	 * degree of the benchmark graph, so that its hot methods are compiled before the run is timed, and writes the
+	 * last result to a temporary file to compile the output code as well. A failed warm-up is logged and does not
+	 * affect the run.
+	 */
+	private void warmUp(BenchmarkRun benchmarkRun, FormattedGraph formattedGraph) {
+		long warmupStart = System.nanoTime();
+		int numVertices = (int) Math.max(1, Math.min(configuration.getWarmupVertices(),
+				formattedGraph.getNumberOfVertices()));
+		long edgesPerVertex = formattedGraph.getNumberOfEdges() * (formattedGraph.isDirected() ? 1 : 2)
+				/ Math.max(1, formattedGraph.getNumberOfVertices());
+		int averageDegree = (int) Math.max(1, Math.min(MAX_WARMUP_DEGREE, edgesPerVertex));
+		try {
+			CsrGraph graph = new SyntheticGraphGenerator(SyntheticGraphGenerator.Topology.RMAT, numVertices,
+					averageDegree, formattedGraph.isDirected(), isWeighted(formattedGraph.getEdgeProperties()),
+					WARMUP_SEED).generate();
+			Algorithm algorithm = benchmarkRun.getAlgorithm();
+			Object parameters = getWarmupParameters(algorithm, benchmarkRun.getAlgorithmParameters(), graph);
+			VertexValues output = null;
+			for (int i = 0; i < configuration.getWarmupIterations(); i++) {
+				output = runJob(algorithm, parameters, graph, new PhaseTimer(), new WorkCounters());
 			}
 
+			Path outputFile = Files.createTempFile("reference-warmup", ".out");
+			try {
+				new VertexOutputWriter(1).write(outputFile, output);
+			} finally {
+				Files.delete(outputFile);
+			}
+		} catch (PlatformExecutionException | IOException | RuntimeException e) {
+			LOG.warn("Failed to warm up the job, continuing without warm-up.", e);
+			return;
 		}
+		LOG.info("Warmed up the job on a graph with " + numVertices + " vertices in "
+				+ (System.nanoTime() - warmupStart) / 1000000 + " ms.");
+	}
 
-		if(startTime != null && endTime != null) {
-
-			BenchmarkMetrics metrics = new BenchmarkMetrics();
-			Long procTimeMS =  new Long(endTime - startTime);
-			BigDecimal procTimeS = (new BigDecimal(procTimeMS)).divide(new BigDecimal(1000), 3, BigDecimal.ROUND_CEILING);
-			metrics.setProcessingTime(new BenchmarkMetric(procTimeS, "s"));
+	/**
+	 * @return the parameters of the benchmark run, with the source of a traversal replaced by the vertex of the
+	 * warm-up graph with the most outgoing edges
+	 */
+	private static Object getWarmupParameters(Algorithm algorithm, Object parameters, CsrGraph graph) {
+		int source = 0;
+		for (int v = 1; v < graph.getNumberOfVertices(); v++) {
+			if (graph.getOutDegree(v) > graph.getOutDegree(source)) {
+				source = v;
+			}
+		}
+		switch (algorithm) {
+			case BFS:
+				return new BreadthFirstSearchParameters(graph.getVertexId(source));
+			case SSSP:
+				return new SingleSourceShortestPathsParameters(graph.getVertexId(source));
+			default:
+				return parameters;
+		}
+	}
 
-			return metrics;
-		} else {
-			return new BenchmarkMetrics();
+	/**
+	 * Runs the job of an algorithm, in parallel if the pool has more than one worker.
+	 */
+	private VertexValues runJob(Algorithm algorithm, Object parameters, CsrGraph graph, PhaseTimer timer,
+			WorkCounters counters) throws PlatformExecutionException {
+		switch (algorithm) {
+			case BFS:
+				BreadthFirstSearchJob bfsJob =
+						new BreadthFirstSearchJob(graph, (BreadthFirstSearchParameters)parameters);
+				bfsJob.setWorkCounters(counters);
+				return bfsJob.run();
+			case CDLP:
+				CommunityDetectionLPJob cdlpJob =
+						new CommunityDetectionLPJob(graph, (CommunityDetectionLPParameters)parameters);
+				cdlpJob.setPhaseTimer(timer);
+				cdlpJob.setWorkCounters(counters);
+				return cdlpJob.run();
+			case WCC:
+				WeaklyConnectedComponentsJob wccJob = new WeaklyConnectedComponentsJob(graph);
+				wccJob.setWorkCounters(counters);
+				return wccJob.run();
+			case PR:
+				PageRankJob prJob = new PageRankJob(graph, (PageRankParameters)parameters,
+						Parallel.getParallelism() > 1, configuration.getPrCacheSize());
+				prJob.setPhaseTimer(timer);
+				prJob.setWorkCounters(counters);
+				return prJob.run();
+			case LCC:
+				LocalClusteringCoefficientJob lccJob = new LocalClusteringCoefficientJob(graph);
+				lccJob.setWorkCounters(counters);
+				return lccJob.run();
+			case SSSP:
+				SingleSourceShortestPathJob ssspJob = new SingleSourceShortestPathJob(graph,
+						(SingleSourceShortestPathsParameters)parameters, Parallel.getParallelism() > 1,
+						configuration.getSsspDelta());
+				ssspJob.setWorkCounters(counters);
+				return ssspJob.run();
+			default:
+				throw new PlatformExecutionException("Unsupported algorithm: " + algorithm);
 		}
 	}
 
-	@Override
-	public void terminate(RunSpecification runSpecification) {
+	private CsrGraph convertToCsrGraph(FormattedGraph formattedGraph, PhaseTimer timer) throws Exception {
+		long loadStart = timer.start();
+		CsrGraph graph = readCachedGraph(formattedGraph);
+		if (graph != null) {
+			timer.record(LOAD_PHASE, loadStart);
+			return graph;
+		}
+
+		long conversionStart = timer.start();
+		graph = parseGraph(formattedGraph);
+		timer.record(CONVERSION_PHASE, conversionStart);
+		return graph;
+	}
 
+	/**
+	 * @return the graph read from the binary graph cache in the configured storage, or null if there is no valid cache
+	 */
+	private CsrGraph readCachedGraph(FormattedGraph formattedGraph) throws IOException {
+		Path cachePath = CsrGraphFile.getCachePath(formattedGraph.getEdgeFilePath());
+		CsrGraph graph;
+		if (configuration.getGraphStorage() == ReferencePlatformConfiguration.GraphStorage.MAPPED) {
+			graph = CsrGraphFile.map(cachePath, formattedGraph.getVertexFilePath(), formattedGraph.getEdgeFilePath());
+		} else {
+			graph = CsrGraphFile.read(cachePath, formattedGraph.getVertexFilePath(), formattedGraph.getEdgeFilePath());
+		}
+		if (graph != null) {
+			LOG.info("Loaded graph: " + formattedGraph.getName() + " from binary graph cache ("
+					+ configuration.getGraphStorage().name().toLowerCase() + " storage).");
+		} else {
+			LOG.warn("No valid binary graph cache found at: " + cachePath + ".");
+		}
+		return graph;
 	}
 
-	private PropertyGraph convertToPropertyGraph(FormattedGraph formattedGraph) throws Exception {
+	private HeapCsrGraph parseGraph(FormattedGraph formattedGraph) throws Exception {
 		LOG.info("Loading graph: " + formattedGraph.getName() + ".");
 
-		ValueParser vertexParser = getValueParser(formattedGraph.getVertexProperties());
-		ValueParser edgeParser = getValueParser(formattedGraph.getEdgeProperties());
+		checkVertexProperties(formattedGraph.getVertexProperties());
 
-		PropertyGraph graph = PropertyGraphParser.parsePropertyGraph(
+		HeapCsrGraph graph = CsrGraphLoader.load(
 				formattedGraph.getVertexFilePath(),
 				formattedGraph.getEdgeFilePath(),
 				formattedGraph.isDirected(),
-				vertexParser,
-				edgeParser);
+				isWeighted(formattedGraph.getEdgeProperties()));
 
 		LOG.info("Loaded graph: " + formattedGraph.getName() + ".");
 
 		return graph;
 	}
 
+	private void checkVertexProperties(PropertyList props) {
+		if (props.size() != 0) {
+			throw new IllegalArgumentException("failed to find property value parser for properties: " + props);
+		}
+	}
 
-	private ValueParser getValueParser(PropertyList props) {
+	private boolean isWeighted(PropertyList props) {
 		if (props.size() == 0) {
-			return new VoidParser();
+			return false;
 		} else if (props.size() == 1 && props.get(0).getType().equals(PropertyType.REAL)) {
-			return new DoubleParser();
+			return true;
 		} else {
 			throw new IllegalArgumentException("failed to find property value parser for properties: " + props);
 		}
@@ -237,31 +425,6 @@ public class ReferencePlatform implements Platform {
 		System.setErr(sysErr);
 	}
 
-	private void writeOutput(String path, Map<Long, ? extends Object> output) throws IOException {
-		try (PrintWriter w = new PrintWriter(new FileOutputStream(path))) {
-			for (Map.Entry<Long, ? extends Object> entry: output.entrySet()) {
-				w.print(entry.getKey());
-				w.print(" ");
-				w.print(entry.getValue());
-				w.println();
-			}
-		}
-	}
-
-	private class VoidParser implements ValueParser<Void> {
-		@Override
-		public Void parse(String[] tokens) throws IOException {
-			return null;
-		}
-	}
-
-	private class DoubleParser implements ValueParser<Double> {
-		@Override
-		public Double parse(String[] tokens) throws IOException {
-			return Double.parseDouble(tokens[0]);
-		}
-	}
-
 	@Override
 	public String getPlatformName() {
 		return "reference";
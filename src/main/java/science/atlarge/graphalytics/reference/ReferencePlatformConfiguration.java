@@ -0,0 +1,181 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference;
+
+import org.apache.commons.configuration.Configuration;
+import org.apache.commons.configuration.ConfigurationException;
+import org.apache.commons.configuration.PropertiesConfiguration;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Settings of the reference implementation, read from the platform.properties file.
+ */
+public final class ReferencePlatformConfiguration {
+
+	private static final Logger LOG = LogManager.getLogger();
+
+	public static final String PROPERTIES_FILE = "platform.properties";
+
+	public static final String GRAPH_STORAGE_KEY = "platform.reference.graph-storage";
+
+	public static final String THREADS_KEY = "platform.reference.threads";
+
+	public static final String CHUNK_SIZE_KEY = "platform.reference.chunk-size";
+
+	public static final String SSSP_DELTA_KEY = "platform.reference.sssp.delta";
+
+	public static final String PR_CACHE_SIZE_KEY = "platform.reference.pr.cache-size";
+
+	public static final String OUTPUT_SHARDS_KEY = "platform.reference.output.shards";
+
+	public static final String WARMUP_VERTICES_KEY = "platform.reference.warmup.vertices";
+
+	public static final String WARMUP_ITERATIONS_KEY = "platform.reference.warmup.iterations";
+
+	/**
+	 * Where the CSR arrays of a loaded graph are stored.
+	 */
+	public enum GraphStorage {
+		/**
+		 * Arrays are read from the binary graph cache into the Java heap.
+		 */
+		HEAP,
+		/**
+		 * The binary graph cache is memory-mapped and paged in by the operating system.
+		 */
+		MAPPED
+	}
+
+	private final GraphStorage graphStorage;
+	private final int numberOfThreads;
+	private final int chunkSize;
+	private final double ssspDelta;
+	private final long prCacheSize;
+	private final int outputShards;
+	private final int warmupVertices;
+	private final int warmupIterations;
+
+	private ReferencePlatformConfiguration(Configuration configuration) {
+		this.graphStorage = getEnum(configuration, GRAPH_STORAGE_KEY, GraphStorage.class, GraphStorage.HEAP);
+		this.numberOfThreads = configuration.getInt(THREADS_KEY, 0);
+		if (numberOfThreads < 0) {
+			throw new IllegalArgumentException("Invalid value for " + THREADS_KEY + ": " + numberOfThreads);
+		}
+		this.chunkSize = configuration.getInt(CHUNK_SIZE_KEY, 0);
+		if (chunkSize < 0) {
+			throw new IllegalArgumentException("Invalid value for " + CHUNK_SIZE_KEY + ": " + chunkSize);
+		}
+		this.ssspDelta = configuration.getDouble(SSSP_DELTA_KEY, 0.0);
+		if (!(ssspDelta >= 0)) {
+			throw new IllegalArgumentException("Invalid value for " + SSSP_DELTA_KEY + ": " + ssspDelta);
+		}
+		this.prCacheSize = configuration.getLong(PR_CACHE_SIZE_KEY, 0L);
+		if (prCacheSize < 0) {
+			throw new IllegalArgumentException("Invalid value for " + PR_CACHE_SIZE_KEY + ": " + prCacheSize);
+		}
+		this.outputShards = configuration.getInt(OUTPUT_SHARDS_KEY, 1);
+		if (outputShards < 1) {
+			throw new IllegalArgumentException("Invalid value for " + OUTPUT_SHARDS_KEY + ": " + outputShards);
+		}
+		this.warmupVertices = configuration.getInt(WARMUP_VERTICES_KEY, 1 << 16);
+		if (warmupVertices < 0) {
+			throw new IllegalArgumentException("Invalid value for " + WARMUP_VERTICES_KEY + ": " + warmupVertices);
+		}
+		this.warmupIterations = configuration.getInt(WARMUP_ITERATIONS_KEY, 5);
+		if (warmupIterations < 0) {
+			throw new IllegalArgumentException("Invalid value for " + WARMUP_ITERATIONS_KEY + ": " + warmupIterations);
+		}
+	}
+
+	/**
+	 * Loads the configuration from the platform.properties file, falling back to the default settings if the file
+	 * cannot be read.
+	 */
+	public static ReferencePlatformConfiguration load() {
+		try {
+			return new ReferencePlatformConfiguration(new PropertiesConfiguration(PROPERTIES_FILE));
+		} catch (ConfigurationException e) {
+			LOG.warn("Could not read " + PROPERTIES_FILE + ", using default settings.", e);
+			return new ReferencePlatformConfiguration(new PropertiesConfiguration());
+		}
+	}
+
+	public GraphStorage getGraphStorage() {
+		return graphStorage;
+	}
+
+	/**
+	 * @return the number of worker threads used by the parallel algorithms, or 0 to use one thread per core
+	 */
+	public int getNumberOfThreads() {
+		return numberOfThreads;
+	}
+
+	/**
+	 * @return the number of elements processed by one task of a parallel loop without a tuned grain size, or 0 to
+	 * derive it from the size of the loop and the number of threads
+	 */
+	public int getChunkSize() {
+		return chunkSize;
+	}
+
+	/**
+	 * @return the bucket width of parallel SSSP, or 0 to derive it from the edge weights of the graph
+	 */
+	public double getSsspDelta() {
+		return ssspDelta;
+	}
+
+	/**
+	 * @return the cache size in bytes for which PageRank uses propagation blocking, or 0 to disable it
+	 */
+	public long getPrCacheSize() {
+		return prCacheSize;
+	}
+
+	/**
+	 * @return the number of files the output is written to in parallel, or 1 to write a single file
+	 */
+	public int getOutputShards() {
+		return outputShards;
+	}
+
+	/**
+	 * @return the maximum number of vertices of the graph that jobs are warmed up on, or 0 to disable the warm-up
+	 */
+	public int getWarmupVertices() {
+		return warmupVertices;
+	}
+
+	/**
+	 * @return the number of times a job is run on the warm-up graph before it is benchmarked, or 0 to disable the
+	 * warm-up
+	 */
+	public int getWarmupIterations() {
+		return warmupIterations;
+	}
+
+	private static <T extends Enum<T>> T getEnum(Configuration configuration, String key, Class<T> type,
+			T defaultValue) {
+		String value = configuration.getString(key, defaultValue.name());
+		try {
+			return Enum.valueOf(type, value.trim().toUpperCase());
+		} catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException("Invalid value for " + key + ": " + value, e);
+		}
+	}
+}
@@ -18,17 +18,31 @@ package science.atlarge.graphalytics.reference.algorithms.bfs;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import it.unimi.dsi.fastutil.longs.AbstractLongPriorityQueue;
-import it.unimi.dsi.fastutil.longs.Long2LongMap;
-import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
-import it.unimi.dsi.fastutil.longs.LongArrayFIFOQueue;
-import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
-import it.unimi.dsi.fastutil.longs.LongSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
 import science.atlarge.graphalytics.domain.algorithms.BreadthFirstSearchParameters;
-import science.atlarge.graphalytics.util.graph.PropertyGraph;
+import science.atlarge.graphalytics.reference.graph.CsrGraph;
+import science.atlarge.graphalytics.reference.graph.LongVertexValues;
+import science.atlarge.graphalytics.reference.util.Parallel;
+import science.atlarge.graphalytics.reference.util.WorkCounters;
 
 /**
- * Reference implementation of the Breadth First Search algorithm.
+ * Reference implementation of the Breadth First Search algorithm. The search is level-synchronous and chooses a
+ * direction for every level (Beamer et al., "Direction-Optimizing Breadth-First Search", SC 2012). Small frontiers
+ * are expanded top-down by visiting the outgoing edges of the frontier. Large frontiers, which occur in the middle
+ * levels of low-diameter graphs, are expanded bottom-up: every unvisited vertex scans its incoming edges for a
+ * parent in the frontier and stops at the first one it finds.
+ *
+ * <p>In parallel mode every level is split across the workers of the fork-join pool. Top-down steps claim vertices
+ * with an atomic compare-and-set on the shared distance array and collect the next frontier in per-task buffers.
+ * Bottom-up steps assign each worker whole 64-vertex words of the frontier bitmaps, so no synchronization is needed.
  *
  * @author Tim Hegeman
  */
@@ -38,51 +52,373 @@ public class BreadthFirstSearchJob {
 
 	private static final long MAX_DISTANCE = Long.MAX_VALUE;
 
-	private final PropertyGraph<Void, Void> graph;
+	/**
+	 * Switch to bottom-up when the frontier has more than 1/ALPHA of the edges incident to unvisited vertices.
+	 */
+	private static final long ALPHA = 15;
+	/**
+	 * Switch back to top-down when the frontier has fewer than 1/BETA of all vertices.
+	 */
+	private static final long BETA = 18;
+
+	/**
+	 * Names of the counters of the number of levels, the size of the largest frontier and the number of vertices in
+	 * all frontiers, i.e. the number of visited vertices.
+	 */
+	private static final String LEVELS = "levels";
+	private static final String MAX_FRONTIER_SIZE = "maximum frontier size";
+	private static final String VISITED_VERTICES = "visited vertices";
+
+	private final CsrGraph graph;
 	private final BreadthFirstSearchParameters parameters;
+	private final boolean parallel;
+	private WorkCounters counters = new WorkCounters();
 
-	public BreadthFirstSearchJob(PropertyGraph<Void, Void> graph, BreadthFirstSearchParameters parameters) {
+	private long[] distances;
+	private long frontierEdges;
+	private long unvisitedEdges;
+	private long edgesScanned;
+
+	/**
+	 * Creates a job that runs in parallel if the fork-join pool has more than one worker.
+	 */
+	public BreadthFirstSearchJob(CsrGraph graph, BreadthFirstSearchParameters parameters) {
+		this(graph, parameters, Parallel.getParallelism() > 1);
+	}
+
+	public BreadthFirstSearchJob(CsrGraph graph, BreadthFirstSearchParameters parameters, boolean parallel) {
 		this.graph = graph;
 		this.parameters = parameters;
+		this.parallel = parallel;
+	}
+
+	/**
+	 * Sets the counters that record the edges scanned, the number of levels and the frontier sizes.
+	 */
+	public void setWorkCounters(WorkCounters counters) {
+		this.counters = counters;
 	}
 
-	public Long2LongMap run() {
+	public LongVertexValues run() {
 		LOG.debug("- Starting Breadth First Search algorithm");
 
-		// Initialize distances
-		Long2LongMap distances = new Long2LongOpenHashMap();
-		for (PropertyGraph<Void, Void>.Vertex v: graph.getVertices()) {
-			distances.put(v.getId(), MAX_DISTANCE);
+		int source = graph.getVertexIndex(parameters.getSourceVertex());
+		if (source < 0) {
+			throw new IllegalArgumentException("Source vertex does not exist: " + parameters.getSourceVertex());
+		}
+		if (parallel) {
+			distances = new ParallelSearch(graph, counters).run(source);
+		} else {
+			runSequential(source);
+		}
+
+		LOG.debug("- Finished Breadth First Search algorithm");
+		return new LongVertexValues(graph, distances);
+	}
+
+	private void runSequential(int source) {
+		int numVertices = graph.getNumberOfVertices();
+
+		// Initialize distances, unvisited vertices have the maximum distance
+		distances = new long[numVertices];
+		Arrays.fill(distances, MAX_DISTANCE);
+		distances[source] = 0L;
+		frontierEdges = graph.getOutDegree(source);
+		unvisitedEdges = graph.getNumberOfEdges() - graph.getInDegree(source);
+		edgesScanned = 0;
+
+		// The frontier is kept as a list of vertices for top-down steps and as a bitmap for bottom-up steps
+		int[] frontier = new int[numVertices];
+		int[] nextFrontier = new int[numVertices];
+		BitSet frontierBitmap = new BitSet(numVertices);
+		BitSet nextFrontierBitmap = new BitSet(numVertices);
+		int frontierSize = 1;
+		frontier[0] = source;
+		boolean bottomUp = false;
+		long levels = 0;
+		long maxFrontierSize = 0;
+		long visitedVertices = 0;
+
+		// Traverse the graph one level at a time
+		for (long distance = 1; frontierSize > 0; distance++) {
+			if (!bottomUp && frontierEdges > unvisitedEdges / ALPHA) {
+				frontierBitmap.clear();
+				for (int i = 0; i < frontierSize; i++) {
+					frontierBitmap.set(frontier[i]);
+				}
+				bottomUp = true;
+			} else if (bottomUp && frontierSize < numVertices / BETA) {
+				frontierSize = 0;
+				for (int v = frontierBitmap.nextSetBit(0); v >= 0; v = frontierBitmap.nextSetBit(v + 1)) {
+					frontier[frontierSize++] = v;
+				}
+				bottomUp = false;
+			}
+			levels++;
+			maxFrontierSize = Math.max(maxFrontierSize, frontierSize);
+			visitedVertices += frontierSize;
+
+			if (!bottomUp) {
+				edgesScanned += frontierEdges;
+			}
+			frontierEdges = 0;
+			if (bottomUp) {
+				frontierSize = bottomUpStep(frontierBitmap, nextFrontierBitmap, distance);
+				BitSet swap = frontierBitmap;
+				frontierBitmap = nextFrontierBitmap;
+				nextFrontierBitmap = swap;
+			} else {
+				frontierSize = topDownStep(frontier, frontierSize, nextFrontier, distance);
+				int[] swap = frontier;
+				frontier = nextFrontier;
+				nextFrontier = swap;
+			}
 		}
-		distances.put(parameters.getSourceVertex(), 0L);
-
-		// Define visited set
-		LongSet visited = new LongOpenHashSet();
-		visited.add(parameters.getSourceVertex());
-
-		// Define traversal queue
-		AbstractLongPriorityQueue queue = new LongArrayFIFOQueue();
-		queue.enqueue(parameters.getSourceVertex());
-
-		// Traverse the graph
-		while (!queue.isEmpty()) {
-			long currentVertexId = queue.dequeueLong();
-			long currentVertexDistance = distances.get(currentVertexId);
-
-			// Iterate over all outgoing edges of this vertex
-			for (PropertyGraph<Void, Void>.Edge e: graph.getVertex(currentVertexId).getOutgoingEdges()) {
-				long neighbour = e.getDestinationVertex().getId();
-
-				// If a neighbour has not been visited, add it to the queue and set its distance from the root
-				if (!visited.contains(neighbour)) {
-					visited.add(neighbour);
-					queue.enqueue(neighbour);
-					distances.put(neighbour, currentVertexDistance + 1);
+		counters.add(WorkCounters.EDGES_SCANNED, edgesScanned);
+		addLevelCounters(counters, levels, maxFrontierSize, visitedVertices);
+	}
+
+	/**
+	 * Visits the outgoing edges of all vertices in the frontier.
+	 *
+	 * @return the size of the next frontier
+	 */
+	private int topDownStep(int[] frontier, int frontierSize, int[] nextFrontier, long distance) {
+		int nextFrontierSize = 0;
+		for (int i = 0; i < frontierSize; i++) {
+			int vertex = frontier[i];
+			for (int e = graph.getOutEdgesBegin(vertex), end = graph.getOutEdgesEnd(vertex); e < end; e++) {
+				int neighbour = graph.getOutNeighbour(e);
+
+				// If a neighbour has not been visited, add it to the next frontier and set its distance from the root
+				if (distances[neighbour] == MAX_DISTANCE) {
+					distances[neighbour] = distance;
+					nextFrontier[nextFrontierSize++] = neighbour;
+					visit(neighbour);
 				}
 			}
 		}
+		return nextFrontierSize;
+	}
 
-		LOG.debug("- Finished Breadth First Search algorithm");
-		return distances;
+	/**
+	 * Lets every unvisited vertex look for a parent in the frontier among its incoming edges.
+	 *
+	 * @return the size of the next frontier
+	 */
+	private int bottomUpStep(BitSet frontier, BitSet nextFrontier, long distance) {
+		nextFrontier.clear();
+		int nextFrontierSize = 0;
+		for (int vertex = 0; vertex < distances.length; vertex++) {
+			if (distances[vertex] != MAX_DISTANCE) {
+				continue;
+			}
+			for (int e = graph.getInEdgesBegin(vertex), end = graph.getInEdgesEnd(vertex); e < end; e++) {
+				edgesScanned++;
+				if (frontier.get(graph.getInNeighbour(e))) {
+					distances[vertex] = distance;
+					nextFrontier.set(vertex);
+					nextFrontierSize++;
+					visit(vertex);
+					break;
+				}
+			}
+		}
+		return nextFrontierSize;
+	}
+
+	private static void addLevelCounters(WorkCounters counters, long levels, long maxFrontierSize,
+			long visitedVertices) {
+		counters.add(LEVELS, levels);
+		counters.add(MAX_FRONTIER_SIZE, maxFrontierSize);
+		counters.add(VISITED_VERTICES, visitedVertices);
+	}
+
+	/**
+	 * Updates the edge counts that drive the choice of direction for a newly visited vertex.
+	 */
+	private void visit(int vertex) {
+		frontierEdges += graph.getOutDegree(vertex);
+		unvisitedEdges -= graph.getInDegree(vertex);
+	}
+
+	/**
+	 * State of a parallel search. Distances are claimed with compare-and-set, and the edge counts that drive the
+	 * choice of direction are accumulated per task and added to shared counters once per task.
+	 */
+	private static final class ParallelSearch {
+
+		private final CsrGraph graph;
+		private final WorkCounters counters;
+		private final AtomicLong edgesScanned;
+		private final int numVertices;
+		private final AtomicLongArray distances;
+		private final AtomicLong frontierEdges = new AtomicLong();
+		private final AtomicLong unvisitedEdges = new AtomicLong();
+		private final AtomicInteger nextFrontierSize = new AtomicInteger();
+
+		ParallelSearch(CsrGraph graph, WorkCounters counters) {
+			this.graph = graph;
+			this.counters = counters;
+			this.edgesScanned = counters.get(WorkCounters.EDGES_SCANNED);
+			this.numVertices = graph.getNumberOfVertices();
+			this.distances = new AtomicLongArray(numVertices);
+		}
+
+		long[] run(int source) {
+			Parallel.forRange(0, numVertices, 0, new Parallel.RangeTask() {
+				@Override
+				public void run(int from, int to) {
+					for (int v = from; v < to; v++) {
+						distances.lazySet(v, MAX_DISTANCE);
+					}
+				}
+			});
+			distances.set(source, 0L);
+			frontierEdges.set(graph.getOutDegree(source));
+			unvisitedEdges.set(graph.getNumberOfEdges() - graph.getInDegree(source));
+
+			int numWords = (numVertices + 63) >>> 6;
+			int[] frontier = new int[numVertices];
+			int[] nextFrontier = new int[numVertices];
+			long[] frontierBitmap = new long[numWords];
+			long[] nextFrontierBitmap = new long[numWords];
+			int frontierSize = 1;
+			frontier[0] = source;
+			boolean bottomUp = false;
+			long levels = 0;
+			long maxFrontierSize = 0;
+			long visitedVertices = 0;
+
+			for (long distance = 1; frontierSize > 0; distance++) {
+				if (!bottomUp && frontierEdges.get() > unvisitedEdges.get() / ALPHA) {
+					Arrays.fill(frontierBitmap, 0L);
+					for (int i = 0; i < frontierSize; i++) {
+						frontierBitmap[frontier[i] >>> 6] |= 1L << frontier[i];
+					}
+					bottomUp = true;
+				} else if (bottomUp && frontierSize < numVertices / BETA) {
+					frontierSize = 0;
+					for (int w = 0; w < numWords; w++) {
+						for (long word = frontierBitmap[w]; word != 0; word &= word - 1) {
+							frontier[frontierSize++] = (w << 6) + Long.numberOfTrailingZeros(word);
+						}
+					}
+					bottomUp = false;
+				}
+				levels++;
+				maxFrontierSize = Math.max(maxFrontierSize, frontierSize);
+				visitedVertices += frontierSize;
+
+				if (!bottomUp) {
+					edgesScanned.addAndGet(frontierEdges.get());
+				}
+				frontierEdges.set(0);
+				nextFrontierSize.set(0);
+				if (bottomUp) {
+					bottomUpStep(frontierBitmap, nextFrontierBitmap, distance);
+					long[] swap = frontierBitmap;
+					frontierBitmap = nextFrontierBitmap;
+					nextFrontierBitmap = swap;
+				} else {
+					topDownStep(frontier, frontierSize, nextFrontier, distance);
+					int[] swap = frontier;
+					frontier = nextFrontier;
+					nextFrontier = swap;
+				}
+				frontierSize = nextFrontierSize.get();
+			}
+			addLevelCounters(counters, levels, maxFrontierSize, visitedVertices);
+
+			final long[] result = new long[numVertices];
+			Parallel.forRange(0, numVertices, 0, new Parallel.RangeTask() {
+				@Override
+				public void run(int from, int to) {
+					for (int v = from; v < to; v++) {
+						result[v] = distances.get(v);
+					}
+				}
+			});
+			return result;
+		}
+
+		private void topDownStep(final int[] frontier, int frontierSize, int[] nextFrontier, final long distance) {
+			final List<IntArrayList> buffers = new ArrayList<>();
+			Parallel.forRange(0, frontierSize, 0, new Parallel.RangeTask() {
+				@Override
+				public void run(int from, int to) {
+					IntArrayList buffer = new IntArrayList();
+					long visitedOutEdges = 0;
+					long visitedInEdges = 0;
+					for (int i = from; i < to; i++) {
+						int vertex = frontier[i];
+						for (int e = graph.getOutEdgesBegin(vertex), end = graph.getOutEdgesEnd(vertex); e < end; e++) {
+							int neighbour = graph.getOutNeighbour(e);
+
+							// Read before attempting to claim, most neighbours in dense levels are already visited
+							if (distances.get(neighbour) == MAX_DISTANCE
+									&& distances.compareAndSet(neighbour, MAX_DISTANCE, distance)) {
+								buffer.add(neighbour);
+								visitedOutEdges += graph.getOutDegree(neighbour);
+								visitedInEdges += graph.getInDegree(neighbour);
+							}
+						}
+					}
+					frontierEdges.addAndGet(visitedOutEdges);
+					unvisitedEdges.addAndGet(-visitedInEdges);
+					if (!buffer.isEmpty()) {
+						synchronized (buffers) {
+							buffers.add(buffer);
+						}
+					}
+				}
+			});
+
+			int nextSize = 0;
+			for (IntArrayList buffer : buffers) {
+				buffer.getElements(0, nextFrontier, nextSize, buffer.size());
+				nextSize += buffer.size();
+			}
+			nextFrontierSize.set(nextSize);
+		}
+
+		private void bottomUpStep(final long[] frontier, final long[] nextFrontier, final long distance) {
+			Parallel.forRange(0, frontier.length, 0, new Parallel.RangeTask() {
+				@Override
+				public void run(int from, int to) {
+					int visited = 0;
+					long visitedOutEdges = 0;
+					long visitedInEdges = 0;
+					long scanned = 0;
+					for (int w = from; w < to; w++) {
+						long nextWord = 0L;
+						for (int vertex = w << 6, end = Math.min(vertex + 64, numVertices); vertex < end; vertex++) {
+							if (distances.get(vertex) != MAX_DISTANCE) {
+								continue;
+							}
+							int edgesEnd = graph.getInEdgesEnd(vertex);
+							for (int e = graph.getInEdgesBegin(vertex); e < edgesEnd; e++) {
+								scanned++;
+								int neighbour = graph.getInNeighbour(e);
+								if ((frontier[neighbour >>> 6] & (1L << neighbour)) != 0) {
+									// Only this task writes the vertex, the join at the end of the step publishes it
+									distances.lazySet(vertex, distance);
+									nextWord |= 1L << vertex;
+									visited++;
+									visitedOutEdges += graph.getOutDegree(vertex);
+									visitedInEdges += graph.getInDegree(vertex);
+									break;
+								}
+							}
+						}
+						nextFrontier[w] = nextWord;
+					}
+					nextFrontierSize.addAndGet(visited);
+					frontierEdges.addAndGet(visitedOutEdges);
+					unvisitedEdges.addAndGet(-visitedInEdges);
+					edgesScanned.addAndGet(scanned);
+				}
+			});
+		}
 	}
 }
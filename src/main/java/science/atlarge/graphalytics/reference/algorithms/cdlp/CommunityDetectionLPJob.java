@@ -15,69 +15,141 @@
  */
 package science.atlarge.graphalytics.reference.algorithms.cdlp;
 
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import it.unimi.dsi.fastutil.longs.Long2IntMap;
 import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
-import it.unimi.dsi.fastutil.longs.Long2LongMap;
-import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
 import science.atlarge.graphalytics.domain.algorithms.CommunityDetectionLPParameters;
-import science.atlarge.graphalytics.util.graph.PropertyGraph;
+import science.atlarge.graphalytics.reference.graph.CsrGraph;
+import science.atlarge.graphalytics.reference.graph.LongVertexValues;
+import science.atlarge.graphalytics.reference.util.Parallel;
+import science.atlarge.graphalytics.reference.util.PhaseTimer;
+import science.atlarge.graphalytics.reference.util.WorkCounters;
 
 /**
- * Reference implementation of community detection algorithm.
+ * Reference implementation of community detection algorithm. Parallel runs split every iteration across the
+ * fork-join pool. Each task collects the labels of a vertex's neighbours in its own scratch array and sorts them, so
+ * the most frequent label is the longest run and the lowest label wins ties, as in the sequential histogram.
+ *
+ * <p>Both modes only recompute vertices that are active, i.e. that have a neighbour whose label changed in the
+ * previous iteration. The label of any other vertex would be computed from the same neighbour labels as in the
+ * previous iteration and therefore cannot change. Vertices that change mark their neighbours as active for the next
+ * iteration, and every vertex clears its own mark when it is visited, so the marks of the current iteration can be
+ * reused for the iteration after the next.
  *
  * @author Stijn Heldens
  */
 public class CommunityDetectionLPJob {
 	private static final Logger LOG = LogManager.getLogger();
 
-	private final PropertyGraph<Void, Void> graph;
+	/**
+	 * Number of vertices per unit of parallel work, kept small to balance vertices with skewed degrees.
+	 */
+	private static final int GRAIN_SIZE = 256;
+
+	/**
+	 * Names of the counters of the number of iterations run and the number of label changes, summed over all
+	 * iterations.
+	 */
+	private static final String ITERATIONS = "iterations";
+	private static final String LABEL_CHANGES = "label changes";
+
+	private final CsrGraph graph;
 	private final CommunityDetectionLPParameters parameters;
+	private final boolean parallel;
+	private PhaseTimer timer = new PhaseTimer();
+	private WorkCounters counters = new WorkCounters();
 
-	public CommunityDetectionLPJob(PropertyGraph<Void, Void> graph, CommunityDetectionLPParameters parameters) {
+	/**
+	 * Creates a job that runs in parallel if the fork-join pool has more than one worker.
+	 */
+	public CommunityDetectionLPJob(CsrGraph graph, CommunityDetectionLPParameters parameters) {
+		this(graph, parameters, Parallel.getParallelism() > 1);
+	}
+
+	public CommunityDetectionLPJob(CsrGraph graph, CommunityDetectionLPParameters parameters, boolean parallel) {
 		this.graph = graph;
 		this.parameters = parameters;
+		this.parallel = parallel;
+	}
+
+	/**
+	 * Sets the timer that records the duration of every iteration.
+	 */
+	public void setPhaseTimer(PhaseTimer timer) {
+		this.timer = timer;
 	}
 
-	public Long2LongMap run() {
+	/**
+	 * Sets the counters that record the edges scanned, the number of iterations and the number of label changes.
+	 */
+	public void setWorkCounters(WorkCounters counters) {
+		this.counters = counters;
+	}
+
+	public LongVertexValues run() {
 		LOG.debug("- Starting community detection algorithm");
 
+		long[] labels = parallel ? runParallel() : runSequential();
+
+		LOG.debug("- Finished community detection algorithm");
+
+		return new LongVertexValues(graph, labels);
+	}
+
+	private long[] runSequential() {
 		// Read parameters
-		int numVertices = graph.getVertices().size();
+		int numVertices = graph.getNumberOfVertices();
 		int numIterations = parameters.getMaxIterations();
 
 		// Initialize values
-		Long2LongMap labels = new Long2LongOpenHashMap(numVertices);
-		Long2LongMap newLabels = new Long2LongOpenHashMap(numVertices);
+		long[] labels = new long[numVertices];
+		long[] newLabels = new long[numVertices];
 		Long2IntMap histogram = new Long2IntOpenHashMap();
 		histogram.defaultReturnValue(0);
+		boolean[] active = new boolean[numVertices];
+		boolean[] nextActive = new boolean[numVertices];
 
-		// Set initial labels
-		for (PropertyGraph<Void, Void>.Vertex v: graph.getVertices()) {
-			labels.put(v.getId(), v.getId());
+		// Set initial labels, all vertices are active in the first iteration
+		for (int v = 0; v < numVertices; v++) {
+			labels[v] = graph.getVertexId(v);
+			active[v] = true;
 		}
 
 		// Run iterations
+		long iterations = 0;
+		long totalChanges = 0;
+		long edgesScanned = 0;
 		for (int it = 0; it < numIterations; it++) {
 			LOG.debug("- Iteration " +  it);
+			long iterationStart = timer.start();
+			iterations++;
 
-			boolean change = false;
+			long changes = 0;
+
+			for (int v = 0; v < numVertices; v++) {
+				// Keep the label of a vertex without changed neighbours
+				if (!active[v]) {
+					newLabels[v] = labels[v];
+					continue;
+				}
+				active[v] = false;
+				edgesScanned += graph.getOutDegree(v) + graph.getInDegree(v);
 
-			for (PropertyGraph<Void, Void>.Vertex v: graph.getVertices()) {
 				histogram.clear();
 
 				// Count frequency of each label
-				for (PropertyGraph<Void, Void>.Edge edge: v.getOutgoingEdges()) {
-					long neighbor = edge.getDestinationVertex().getId();
-					long label = labels.get(neighbor);
+				for (int e = graph.getOutEdgesBegin(v), end = graph.getOutEdgesEnd(v); e < end; e++) {
+					long label = labels[graph.getOutNeighbour(e)];
 					histogram.put(label, histogram.get(label) + 1);
 				}
 
-				for (PropertyGraph<Void, Void>.Edge edge: v.getIncomingEdges()) {
-					long neighbor = edge.getSourceVertex().getId();
-					long label = labels.get(neighbor);
+				for (int e = graph.getInEdgesBegin(v), end = graph.getInEdgesEnd(v); e < end; e++) {
+					long label = labels[graph.getInNeighbour(e)];
 					histogram.put(label, histogram.get(label) + 1);
 				}
 
@@ -86,8 +158,9 @@ public class CommunityDetectionLPJob {
 
 				// Select label with highest frequency. In case of a tie,
 				// the label with the lowest value is chosen.
-				for (long label: histogram.keySet()) {
-					int count = histogram.get(label);
+				for (Long2IntMap.Entry entry: histogram.long2IntEntrySet()) {
+					long label = entry.getLongKey();
+					int count = entry.getIntValue();
 
 					if (count > bestCount || (count == bestCount && label < bestLabel)) {
 						bestLabel = label;
@@ -96,21 +169,170 @@ public class CommunityDetectionLPJob {
 				}
 
 				// Set new label and check if label of vertex has changed
-				newLabels.put(v.getId(), bestLabel);
-				change = change || labels.get(v.getId()) != bestLabel;
+				newLabels[v] = bestLabel;
+				if (labels[v] != bestLabel) {
+					changes++;
+					activateNeighbours(v, nextActive);
+				}
 			}
 
-			Long2LongMap tmp = labels;
+			long[] tmp = labels;
 			labels = newLabels;
 			newLabels = tmp;
+			boolean[] tmpActive = active;
+			active = nextActive;
+			nextActive = tmpActive;
 
-			if (!change) {
+			timer.record(PhaseTimer.iterationPhase(it), iterationStart);
+			totalChanges += changes;
+			if (changes == 0) {
 				break;
 			}
 		}
+		counters.add(WorkCounters.EDGES_SCANNED, edgesScanned);
+		addIterationCounters(iterations, totalChanges);
 
-		LOG.debug("- Finished community detection algorithm");
+		return labels;
+	}
+
+	private long[] runParallel() {
+		// Read parameters
+		final int numVertices = graph.getNumberOfVertices();
+		int numIterations = parameters.getMaxIterations();
+
+		// Initialize values
+		long[] labels = new long[numVertices];
+		long[] newLabels = new long[numVertices];
+		final AtomicLong edgesScanned = counters.get(WorkCounters.EDGES_SCANNED);
+
+		// Marks are only ever set to true concurrently, and are read after the iteration that sets them has joined
+		boolean[] active = new boolean[numVertices];
+		boolean[] nextActive = new boolean[numVertices];
+
+		// Set initial labels, all vertices are active in the first iteration
+		final long[] initialLabels = labels;
+		final boolean[] initialActive = active;
+		Parallel.forRange(0, numVertices, 0, new Parallel.RangeTask() {
+			@Override
+			public void run(int from, int to) {
+				for (int v = from; v < to; v++) {
+					initialLabels[v] = graph.getVertexId(v);
+					initialActive[v] = true;
+				}
+			}
+		});
+
+		// Run iterations
+		long iterations = 0;
+		long totalChanges = 0;
+		final AtomicLong changes = new AtomicLong();
+		for (int it = 0; it < numIterations; it++) {
+			LOG.debug("- Iteration " +  it);
+			long iterationStart = timer.start();
+			iterations++;
+			changes.set(0);
+
+			final long[] currentLabels = labels;
+			final long[] nextLabels = newLabels;
+			final boolean[] currentActive = active;
+			final boolean[] markedActive = nextActive;
+			Parallel.forRange(0, numVertices, GRAIN_SIZE, new Parallel.RangeTask() {
+				@Override
+				public void run(int from, int to) {
+					long[] neighbourLabels = new long[16];
+					long localChanges = 0;
+					long scanned = 0;
+					for (int v = from; v < to; v++) {
+						// Keep the label of a vertex without changed neighbours
+						if (!currentActive[v]) {
+							nextLabels[v] = currentLabels[v];
+							continue;
+						}
+						currentActive[v] = false;
+
+						int degree = graph.getOutDegree(v) + graph.getInDegree(v);
+						scanned += degree;
+						if (neighbourLabels.length < degree) {
+							neighbourLabels = new long[Math.max(degree, neighbourLabels.length * 2)];
+						}
+						long bestLabel = mostFrequentLabel(v, currentLabels, neighbourLabels);
+						nextLabels[v] = bestLabel;
+						if (currentLabels[v] != bestLabel) {
+							localChanges++;
+							activateNeighbours(v, markedActive);
+						}
+					}
+					changes.addAndGet(localChanges);
+					edgesScanned.addAndGet(scanned);
+				}
+			});
+
+			labels = nextLabels;
+			newLabels = currentLabels;
+			active = markedActive;
+			nextActive = currentActive;
+
+			timer.record(PhaseTimer.iterationPhase(it), iterationStart);
+			totalChanges += changes.get();
+			if (changes.get() == 0) {
+				break;
+			}
+		}
+		addIterationCounters(iterations, totalChanges);
 
 		return labels;
 	}
+
+	private void addIterationCounters(long iterations, long labelChanges) {
+		counters.add(ITERATIONS, iterations);
+		counters.add(LABEL_CHANGES, labelChanges);
+	}
+
+	/**
+	 * Marks all vertices that count the label of v, i.e. its outgoing and incoming neighbours.
+	 */
+	private void activateNeighbours(int v, boolean[] active) {
+		for (int e = graph.getOutEdgesBegin(v), end = graph.getOutEdgesEnd(v); e < end; e++) {
+			active[graph.getOutNeighbour(e)] = true;
+		}
+		if (graph.isDirected()) {
+			for (int e = graph.getInEdgesBegin(v), end = graph.getInEdgesEnd(v); e < end; e++) {
+				active[graph.getInNeighbour(e)] = true;
+			}
+		}
+	}
+
+	/**
+	 * Selects the label with the highest frequency among the neighbours of a vertex. In case of a tie, the label
+	 * with the lowest value is chosen. A vertex without neighbours gets label 0.
+	 *
+	 * @param neighbourLabels scratch array with room for the labels of all neighbours
+	 */
+	private long mostFrequentLabel(int v, long[] labels, long[] neighbourLabels) {
+		int degree = 0;
+		for (int e = graph.getOutEdgesBegin(v), end = graph.getOutEdgesEnd(v); e < end; e++) {
+			neighbourLabels[degree++] = labels[graph.getOutNeighbour(e)];
+		}
+		for (int e = graph.getInEdgesBegin(v), end = graph.getInEdgesEnd(v); e < end; e++) {
+			neighbourLabels[degree++] = labels[graph.getInNeighbour(e)];
+		}
+		Arrays.sort(neighbourLabels, 0, degree);
+
+		long bestLabel = 0;
+		int bestCount = 0;
+		for (int i = 0; i < degree; ) {
+			long label = neighbourLabels[i];
+			int runEnd = i + 1;
+			while (runEnd < degree && neighbourLabels[runEnd] == label) {
+				runEnd++;
+			}
+			// Runs are visited in ascending order, so only a strictly higher count replaces the best label
+			if (runEnd - i > bestCount) {
+				bestLabel = label;
+				bestCount = runEnd - i;
+			}
+			i = runEnd;
+		}
+		return bestLabel;
+	}
 }
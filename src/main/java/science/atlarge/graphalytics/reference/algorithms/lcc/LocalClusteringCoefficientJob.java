@@ -15,62 +15,141 @@
  */
 package science.atlarge.graphalytics.reference.algorithms.lcc;
 
-import java.util.HashSet;
-import java.util.Set;
-
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import it.unimi.dsi.fastutil.longs.Long2DoubleMap;
-import it.unimi.dsi.fastutil.longs.Long2DoubleOpenHashMap;
-import science.atlarge.graphalytics.util.graph.PropertyGraph;
+import science.atlarge.graphalytics.reference.graph.CsrGraph;
+import science.atlarge.graphalytics.reference.graph.DoubleVertexValues;
+import science.atlarge.graphalytics.reference.util.Parallel;
+import science.atlarge.graphalytics.reference.util.WorkCounters;
 
 /**
- * Reference implementation of local clustering coefficient calculation.
+ * Reference implementation of local clustering coefficient calculation. Sequential runs mark the neighbourhood of
+ * every vertex in a shared array. Parallel runs count every triangle once along degree-ordered edges for undirected
+ * graphs (see {@link ForwardTriangleCounting}), and intersect sorted neighbour lists otherwise (see
+ * {@link NeighbourhoodIntersection}).
  *
  * @author Stijn Heldens
  */
 public class LocalClusteringCoefficientJob {
 	private static final Logger LOG = LogManager.getLogger();
 
-	private final PropertyGraph<Void, Void> graph;
+	/**
+	 * Algorithm used to count the edges within the neighbourhood of every vertex.
+	 */
+	public enum Kernel {
+		/**
+		 * Sequential, marks the neighbourhood of every vertex in an array.
+		 */
+		MARKING,
+		/**
+		 * Parallel, intersects sorted neighbour lists.
+		 */
+		INTERSECTION,
+		/**
+		 * Parallel, enumerates every triangle once. Only applies to undirected graphs without self-loops or parallel
+		 * edges, other graphs use INTERSECTION.
+		 */
+		FORWARD
+	}
+
+	/**
+	 * Name of the counter of the number of neighbour lists that are intersected with a neighbourhood.
+	 */
+	static final String INTERSECTIONS = "intersections";
+
+	private final CsrGraph graph;
+	private final Kernel kernel;
+	private WorkCounters counters = new WorkCounters();
+
+	/**
+	 * Creates a job that runs in parallel if the fork-join pool has more than one worker.
+	 */
+	public LocalClusteringCoefficientJob(CsrGraph graph) {
+		this(graph, Parallel.getParallelism() > 1);
+	}
 
-	public LocalClusteringCoefficientJob(PropertyGraph<Void, Void> graph) {
+	public LocalClusteringCoefficientJob(CsrGraph graph, boolean parallel) {
+		this(graph, parallel ? Kernel.FORWARD : Kernel.MARKING);
+	}
+
+	public LocalClusteringCoefficientJob(CsrGraph graph, Kernel kernel) {
 		this.graph = graph;
+		this.kernel = kernel;
 	}
 
-	public Long2DoubleMap run() {
+	/**
+	 * Sets the counters that record the edges scanned and the neighbour list intersections.
+	 */
+	public void setWorkCounters(WorkCounters counters) {
+		this.counters = counters;
+	}
+
+	public DoubleVertexValues run() {
 		LOG.debug("- Starting local clustering coefficient calculation");
 
-		Long2DoubleMap lcc = new Long2DoubleOpenHashMap();
+		double[] lcc;
+		if (kernel == Kernel.MARKING) {
+			lcc = runSequential();
+		} else if (kernel == Kernel.FORWARD && ForwardTriangleCounting.isApplicable(graph)) {
+			lcc = new ForwardTriangleCounting(graph, counters).run();
+		} else {
+			lcc = new NeighbourhoodIntersection(graph, counters).run();
+		}
+
+		LOG.debug("- Finished local clustering coefficient calculation");
 
-		for (PropertyGraph<Void, Void>.Vertex v: graph.getVertices()) {
-			int tri = 0;
-			Set<PropertyGraph<Void, Void>.Vertex> v_neighbours = new HashSet<>();
+		return new DoubleVertexValues(graph, lcc);
+	}
+
+	private double[] runSequential() {
+		int numVertices = graph.getNumberOfVertices();
+		double[] lcc = new double[numVertices];
+
+		// Neighbours of the current vertex v are marked with v + 1 and collected in a reusable buffer
+		int[] marks = new int[numVertices];
+		int[] v_neighbours = new int[numVertices];
+		long edgesScanned = 0;
+		long intersections = 0;
 
-			for (PropertyGraph<Void, Void>.Edge e: v.getIncomingEdges()) {
-				v_neighbours.add(e.getSourceVertex());
+		for (int v = 0; v < numVertices; v++) {
+			int tri = 0;
+			int mark = v + 1;
+			int degree = 0;
+
+			for (int e = graph.getInEdgesBegin(v), end = graph.getInEdgesEnd(v); e < end; e++) {
+				int u = graph.getInNeighbour(e);
+				if (marks[u] != mark) {
+					marks[u] = mark;
+					v_neighbours[degree++] = u;
+				}
 			}
 
-			for (PropertyGraph<Void, Void>.Edge e: v.getOutgoingEdges()) {
-				v_neighbours.add(e.getDestinationVertex());
+			for (int e = graph.getOutEdgesBegin(v), end = graph.getOutEdgesEnd(v); e < end; e++) {
+				int u = graph.getOutNeighbour(e);
+				if (marks[u] != mark) {
+					marks[u] = mark;
+					v_neighbours[degree++] = u;
+				}
 			}
 
-			for (PropertyGraph<Void, Void>.Vertex u: v_neighbours) {
-				for (PropertyGraph<Void, Void>.Edge e: u.getOutgoingEdges()) {
-					if (v_neighbours.contains(e.getDestinationVertex())) {
+			for (int i = 0; i < degree; i++) {
+				int u = v_neighbours[i];
+				for (int e = graph.getOutEdgesBegin(u), end = graph.getOutEdgesEnd(u); e < end; e++) {
+					if (marks[graph.getOutNeighbour(e)] == mark) {
 						tri++;
 					}
 				}
+				edgesScanned += graph.getOutDegree(u);
 			}
+			edgesScanned += graph.getInDegree(v) + graph.getOutDegree(v);
+			intersections += degree;
 
-			int degree = v_neighbours.size();
-
-			double result = degree >= 2 ? tri / (degree * (degree - 1.0)) : 0.0;
-			lcc.put(v.getId(), result);
+			lcc[v] = degree >= 2 ? tri / (degree * (degree - 1.0)) : 0.0;
 		}
 
-		LOG.debug("- Finished local clustering coefficient calculation");
+		counters.add(WorkCounters.EDGES_SCANNED, edgesScanned);
+		counters.add(INTERSECTIONS, intersections);
 
 		return lcc;
 	}
@@ -0,0 +1,246 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.algorithms.lcc;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import science.atlarge.graphalytics.reference.graph.CsrGraph;
+import science.atlarge.graphalytics.reference.util.Parallel;
+import science.atlarge.graphalytics.reference.util.WorkCounters;
+
+/**
+ * Parallel local clustering coefficient computation by intersecting sorted neighbour lists. The neighbourhood of a
+ * vertex v is the sorted, deduplicated union of its incoming and outgoing neighbours. The number of edges within
+ * the neighbourhood is the sum, over all neighbours u, of the number of outgoing edges of u that end in the
+ * neighbourhood. These counts are computed with a linear merge if both lists have similar lengths, and with a
+ * galloping search through the longer list otherwise. For high-degree vertices the neighbourhood is marked in a
+ * per-thread bitmap instead, which is cheaper than intersecting it with every neighbour's list.
+ *
+ * <p>Vertices are processed in small ranges that idle workers steal from each other, which balances the skewed
+ * cost of vertices in power-law graphs.
+ */
+final class NeighbourhoodIntersection {
+
+	private static final int GRAIN_SIZE = 64;
+	/**
+	 * Minimum neighbourhood size for which the neighbourhood is marked in a bitmap.
+	 */
+	private static final int HUB_DEGREE = 512;
+	/**
+	 * Minimum ratio between list lengths for which galloping is used instead of a linear merge.
+	 */
+	private static final int GALLOP_RATIO = 16;
+
+	private final CsrGraph graph;
+	private final ThreadLocal<long[]> hubBitmaps = new ThreadLocal<>();
+	private final AtomicLong edgesScanned;
+	private final AtomicLong intersections;
+
+	/**
+	 * @param counters the counters that record the edges scanned and the neighbour list intersections
+	 */
+	NeighbourhoodIntersection(CsrGraph graph, WorkCounters counters) {
+		this.graph = graph;
+		this.edgesScanned = counters.get(WorkCounters.EDGES_SCANNED);
+		this.intersections = counters.get(LocalClusteringCoefficientJob.INTERSECTIONS);
+	}
+
+	double[] run() {
+		final double[] lcc = new double[graph.getNumberOfVertices()];
+		Parallel.forRange(0, lcc.length, GRAIN_SIZE, new Parallel.RangeTask() {
+			@Override
+			public void run(int from, int to) {
+				int[] neighbours = new int[16];
+				long scanned = 0;
+				long intersected = 0;
+				for (int v = from; v < to; v++) {
+					int maxDegree = graph.getInDegree(v) + graph.getOutDegree(v);
+					if (neighbours.length < maxDegree) {
+						neighbours = new int[Math.max(maxDegree, neighbours.length * 2)];
+					}
+					int degree = collectNeighbours(v, neighbours);
+					scanned += maxDegree;
+					if (degree < 2) {
+						continue;
+					}
+
+					long tri;
+					if (degree >= HUB_DEGREE) {
+						tri = countWithBitmap(neighbours, degree);
+					} else {
+						tri = 0;
+						for (int i = 0; i < degree; i++) {
+							tri += countCommon(neighbours[i], neighbours, degree);
+						}
+					}
+					for (int i = 0; i < degree; i++) {
+						scanned += graph.getOutDegree(neighbours[i]);
+					}
+					intersected += degree;
+					lcc[v] = tri / (degree * (degree - 1.0));
+				}
+				edgesScanned.addAndGet(scanned);
+				intersections.addAndGet(intersected);
+			}
+		});
+		return lcc;
+	}
+
+	/**
+	 * Merges the sorted incoming and outgoing neighbours of a vertex into a sorted list without duplicates.
+	 *
+	 * @return the number of distinct neighbours
+	 */
+	private int collectNeighbours(int v, int[] neighbours) {
+		int degree = 0;
+		int in = graph.getInEdgesBegin(v);
+		int inEnd = graph.isDirected() ? graph.getInEdgesEnd(v) : in;
+		int out = graph.getOutEdgesBegin(v);
+		int outEnd = graph.getOutEdgesEnd(v);
+		while (in < inEnd || out < outEnd) {
+			int next;
+			if (out == outEnd || (in < inEnd && graph.getInNeighbour(in) < graph.getOutNeighbour(out))) {
+				next = graph.getInNeighbour(in++);
+			} else {
+				next = graph.getOutNeighbour(out++);
+			}
+			if (degree == 0 || neighbours[degree - 1] != next) {
+				neighbours[degree++] = next;
+			}
+		}
+		return degree;
+	}
+
+	/**
+	 * @return the number of outgoing edges of u that end in the given sorted list of distinct vertices
+	 */
+	private long countCommon(int u, int[] neighbours, int size) {
+		int begin = graph.getOutEdgesBegin(u);
+		int end = graph.getOutEdgesEnd(u);
+		int outDegree = end - begin;
+		long count = 0;
+		if (outDegree == 0) {
+			return 0;
+		} else if (outDegree >= (long) size * GALLOP_RATIO) {
+			// Search every neighbour in the long edge list, counting parallel edges
+			int e = begin;
+			for (int i = 0; i < size && e < end; i++) {
+				e = gallopEdges(e, end, neighbours[i]);
+				while (e < end && graph.getOutNeighbour(e) == neighbours[i]) {
+					count++;
+					e++;
+				}
+			}
+		} else if (size >= (long) outDegree * GALLOP_RATIO) {
+			// Search the target of every edge in the long neighbour list
+			int i = 0;
+			for (int e = begin; e < end && i < size; e++) {
+				int target = graph.getOutNeighbour(e);
+				i = gallop(neighbours, i, size, target);
+				if (i < size && neighbours[i] == target) {
+					count++;
+				}
+			}
+		} else {
+			int i = 0;
+			for (int e = begin; e < end && i < size; e++) {
+				int target = graph.getOutNeighbour(e);
+				while (i < size && neighbours[i] < target) {
+					i++;
+				}
+				if (i < size && neighbours[i] == target) {
+					count++;
+				}
+			}
+		}
+		return count;
+	}
+
+	private long countWithBitmap(int[] neighbours, int size) {
+		long[] bitmap = hubBitmaps.get();
+		if (bitmap == null) {
+			bitmap = new long[(graph.getNumberOfVertices() + 63) >>> 6];
+			hubBitmaps.set(bitmap);
+		}
+		for (int i = 0; i < size; i++) {
+			bitmap[neighbours[i] >>> 6] |= 1L << neighbours[i];
+		}
+
+		long count = 0;
+		for (int i = 0; i < size; i++) {
+			int u = neighbours[i];
+			for (int e = graph.getOutEdgesBegin(u), end = graph.getOutEdgesEnd(u); e < end; e++) {
+				int target = graph.getOutNeighbour(e);
+				if ((bitmap[target >>> 6] & (1L << target)) != 0) {
+					count++;
+				}
+			}
+		}
+
+		for (int i = 0; i < size; i++) {
+			bitmap[neighbours[i] >>> 6] = 0L;
+		}
+		return count;
+	}
+
+	/**
+	 * @return the first index in [from, to) of the sorted array with a value of at least key, or to if none
+	 */
+	private static int gallop(int[] values, int from, int to, int key) {
+		int step = 1;
+		int low = from;
+		int high = from;
+		while (high < to && values[high] < key) {
+			low = high + 1;
+			high += step;
+			step <<= 1;
+		}
+		high = Math.min(high, to);
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (values[middle] < key) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * @return the first outgoing edge in [from, to) with a neighbour of at least key, or to if none
+	 */
+	private int gallopEdges(int from, int to, int key) {
+		int step = 1;
+		int low = from;
+		int high = from;
+		while (high < to && graph.getOutNeighbour(high) < key) {
+			low = high + 1;
+			high += step;
+			step <<= 1;
+		}
+		high = Math.min(high, to);
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (graph.getOutNeighbour(middle) < key) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+}
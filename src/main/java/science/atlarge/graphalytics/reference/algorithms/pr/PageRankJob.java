@@ -18,79 +18,231 @@ package science.atlarge.graphalytics.reference.algorithms.pr;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import it.unimi.dsi.fastutil.longs.Long2DoubleMap;
-import it.unimi.dsi.fastutil.longs.Long2DoubleOpenHashMap;
 import science.atlarge.graphalytics.domain.algorithms.PageRankParameters;
-import science.atlarge.graphalytics.util.graph.PropertyGraph;
+import science.atlarge.graphalytics.reference.graph.CsrGraph;
+import science.atlarge.graphalytics.reference.graph.DoubleVertexValues;
+import science.atlarge.graphalytics.reference.util.Parallel;
+import science.atlarge.graphalytics.reference.util.PhaseTimer;
+import science.atlarge.graphalytics.reference.util.WorkCounters;
 
 /**
- * Reference implementation of PageRank algorithm.
+ * Reference implementation of PageRank algorithm. Parallel runs gather the contributions of incoming neighbours
+ * for disjoint blocks of vertices, with the contribution of every vertex (its rank times its inverse out-degree)
+ * computed once per iteration in the same sweep that produces the rank and the sum of dangling ranks. If a cache
+ * size is given and the ranks of the graph do not fit in it, the iterations use propagation blocking instead, in
+ * the same mode (see {@link PropagationBlockingPageRank}).
  *
  * @author Tim Hegeman
  */
 public class PageRankJob {
 	private static final Logger LOG = LogManager.getLogger();
 
-	private final PropertyGraph<Void, Void> graph;
+	/**
+	 * Number of vertices per unit of parallel work.
+	 */
+	private static final int BLOCK_SIZE = 4096;
+
+	private final CsrGraph graph;
 	private final PageRankParameters parameters;
+	private final boolean parallel;
+	private final long cacheSize;
+	private PhaseTimer timer = new PhaseTimer();
+	private WorkCounters counters = new WorkCounters();
+
+	/**
+	 * Creates a job that runs in parallel if the fork-join pool has more than one worker.
+	 */
+	public PageRankJob(CsrGraph graph, PageRankParameters parameters) {
+		this(graph, parameters, Parallel.getParallelism() > 1);
+	}
 
-	public PageRankJob(PropertyGraph<Void, Void> graph, PageRankParameters parameters) {
+	public PageRankJob(CsrGraph graph, PageRankParameters parameters, boolean parallel) {
+		this(graph, parameters, parallel, 0L);
+	}
+
+	/**
+	 * @param cacheSize size in bytes of the cache used to choose the blocks of propagation blocking, or 0 to never
+	 *                  use propagation blocking
+	 */
+	public PageRankJob(CsrGraph graph, PageRankParameters parameters, boolean parallel, long cacheSize) {
 		this.graph = graph;
 		this.parameters = parameters;
+		this.parallel = parallel;
+		this.cacheSize = cacheSize;
+	}
+
+	/**
+	 * Sets the timer that records the duration of every iteration.
+	 */
+	public void setPhaseTimer(PhaseTimer timer) {
+		this.timer = timer;
+	}
+
+	/**
+	 * Sets the counters that record the edges scanned.
+	 */
+	public void setWorkCounters(WorkCounters counters) {
+		this.counters = counters;
 	}
 
-	public Long2DoubleMap run() {
+	public DoubleVertexValues run() {
 		LOG.debug("- Starting PageRank algorithm");
 
+		double[] ranks;
+		if (PropagationBlockingPageRank.exceedsCache(graph, cacheSize)) {
+			ranks = new PropagationBlockingPageRank(graph, parameters, parallel, cacheSize, timer).run();
+		} else {
+			ranks = parallel ? runParallel() : runSequential();
+		}
+
+		// Every iteration reads every edge once
+		counters.add(WorkCounters.EDGES_SCANNED, (long) parameters.getNumberOfIterations() * graph.getNumberOfEdges());
+
+		LOG.debug("- Finished PageRank algorithm");
+
+		return new DoubleVertexValues(graph, ranks);
+	}
+
+	private double[] runSequential() {
 		// Read parameters
-		int numVertices = graph.getVertices().size();
+		int numVertices = graph.getNumberOfVertices();
 		int numIterations = parameters.getNumberOfIterations();
 		double dampingFactor = parameters.getDampingFactor();
 
 		// Initialize values
-		Long2DoubleMap ranks = new Long2DoubleOpenHashMap(numVertices);
-		Long2DoubleMap newRanks = new Long2DoubleOpenHashMap(numVertices);
+		double[] ranks = new double[numVertices];
+		double[] newRanks = new double[numVertices];
 
-		for (PropertyGraph<Void, Void>.Vertex v: graph.getVertices()) {
-			ranks.put(v.getId(), 1.0 / numVertices);
+		for (int v = 0; v < numVertices; v++) {
+			ranks[v] = 1.0 / numVertices;
 		}
 
 		// Run iterations
 		for (int it = 0; it < numIterations; it++) {
 			LOG.debug("- Iteration " +  it);
+			long iterationStart = timer.start();
 
 			double danglingSum = 0.0;
 
 			// Collect sum of ranks for dangling vertices (i.e., without outgoing edges)
-			for (PropertyGraph<Void, Void>.Vertex v: graph.getVertices()) {
-				if (v.getOutgoingEdges().isEmpty()) {
-					danglingSum += ranks.get(v.getId());
+			for (int v = 0; v < numVertices; v++) {
+				if (graph.getOutDegree(v) == 0) {
+					danglingSum += ranks[v];
 				}
 			}
 
 			// Compute new rank for all vertices
-			for (PropertyGraph<Void, Void>.Vertex v: graph.getVertices()) {
+			for (int v = 0; v < numVertices; v++) {
 				double sum = 0.0;
 
-				for (PropertyGraph<Void, Void>.Edge e: v.getIncomingEdges()) {
-					PropertyGraph<Void, Void>.Vertex u = e.getSourceVertex();
-					sum += ranks.get(u.getId()) / u.getOutgoingEdges().size();
+				for (int e = graph.getInEdgesBegin(v), end = graph.getInEdgesEnd(v); e < end; e++) {
+					int u = graph.getInNeighbour(e);
+					sum += ranks[u] / graph.getOutDegree(u);
 				}
 
 				double newRank = (1.0 - dampingFactor) / numVertices
 						+ dampingFactor * (sum + danglingSum / numVertices);
 
-				newRanks.put(v.getId(), newRank);
+				newRanks[v] = newRank;
 			}
 
 			// Swap prev and next
-			Long2DoubleMap tmp = ranks;
+			double[] tmp = ranks;
 			ranks = newRanks;
 			newRanks = tmp;
+
+			timer.record(PhaseTimer.iterationPhase(it), iterationStart);
 		}
 
-		LOG.debug("- Finished PageRank algorithm");
+		return ranks;
+	}
+
+	private double[] runParallel() {
+		final int numVertices = graph.getNumberOfVertices();
+		int numIterations = parameters.getNumberOfIterations();
+		final double dampingFactor = parameters.getDampingFactor();
+
+		// Partial sums of dangling ranks are kept per block of vertices and added in block order, so the result does
+		// not depend on the number of threads
+		final int numBlocks = (numVertices + BLOCK_SIZE - 1) / BLOCK_SIZE;
+		final double[] danglingSums = new double[numBlocks];
+
+		final double[] ranks = new double[numVertices];
+		final double[] inverseOutDegrees = new double[numVertices];
+		double[] contributions = new double[numVertices];
+
+		// Initialize values
+		final double[] initialContributions = contributions;
+		Parallel.forRange(0, numBlocks, 1, new Parallel.RangeTask() {
+			@Override
+			public void run(int fromBlock, int toBlock) {
+				for (int block = fromBlock; block < toBlock; block++) {
+					double blockDanglingSum = 0.0;
+					for (int v = block * BLOCK_SIZE, end = Math.min(v + BLOCK_SIZE, numVertices); v < end; v++) {
+						int outDegree = graph.getOutDegree(v);
+						ranks[v] = 1.0 / numVertices;
+						if (outDegree == 0) {
+							blockDanglingSum += ranks[v];
+						} else {
+							inverseOutDegrees[v] = 1.0 / outDegree;
+						}
+						initialContributions[v] = ranks[v] * inverseOutDegrees[v];
+					}
+					danglingSums[block] = blockDanglingSum;
+				}
+			}
+		});
+		double danglingSum = sum(danglingSums);
+
+		// Run iterations
+		double[] newContributions = new double[numVertices];
+		for (int it = 0; it < numIterations; it++) {
+			LOG.debug("- Iteration " +  it);
+			long iterationStart = timer.start();
+
+			final double[] currentContributions = contributions;
+			final double[] nextContributions = newContributions;
+			final double danglingShare = danglingSum / numVertices;
+			Parallel.forRange(0, numBlocks, 1, new Parallel.RangeTask() {
+				@Override
+				public void run(int fromBlock, int toBlock) {
+					for (int block = fromBlock; block < toBlock; block++) {
+						double blockDanglingSum = 0.0;
+						for (int v = block * BLOCK_SIZE, end = Math.min(v + BLOCK_SIZE, numVertices); v < end; v++) {
+							double sum = 0.0;
+							for (int e = graph.getInEdgesBegin(v), last = graph.getInEdgesEnd(v); e < last; e++) {
+								sum += currentContributions[graph.getInNeighbour(e)];
+							}
+
+							double newRank = (1.0 - dampingFactor) / numVertices
+									+ dampingFactor * (sum + danglingShare);
+							ranks[v] = newRank;
+							nextContributions[v] = newRank * inverseOutDegrees[v];
+							if (inverseOutDegrees[v] == 0.0) {
+								blockDanglingSum += newRank;
+							}
+						}
+						danglingSums[block] = blockDanglingSum;
+					}
+				}
+			});
+			danglingSum = sum(danglingSums);
+
+			// Swap prev and next
+			contributions = nextContributions;
+			newContributions = currentContributions;
+
+			timer.record(PhaseTimer.iterationPhase(it), iterationStart);
+		}
 
 		return ranks;
 	}
+
+	static double sum(double[] values) {
+		double sum = 0.0;
+		for (double value : values) {
+			sum += value;
+		}
+		return sum;
+	}
 }
@@ -0,0 +1,238 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.algorithms.pr;
+
+import science.atlarge.graphalytics.domain.algorithms.PageRankParameters;
+import science.atlarge.graphalytics.reference.graph.CsrGraph;
+import science.atlarge.graphalytics.reference.util.Parallel;
+import science.atlarge.graphalytics.reference.util.PhaseTimer;
+
+/**
+ * PageRank with propagation blocking (Beamer et al., "Reducing PageRank Communication via Propagation Blocking",
+ * IPDPS 2017). The vertices are divided into blocks whose rank sums fit in the cache. Every iteration first scatters
+ * the contribution of every edge into the bin of the block that contains its destination, reading the ranks of the
+ * sources sequentially. It then gathers each bin into the rank sums of its block, which stay in cache. Both phases
+ * access memory mostly sequentially, in contrast to the random reads of ranks by a pull-based iteration.
+ *
+ * <p>The destinations of all edges in the bins do not change between iterations and are stored once, so each
+ * iteration only writes the contributions. The bins take 12 bytes per edge. Within a bin, edges are ordered by
+ * source, so every rank sum is added in the same order as by the pull-based iteration.
+ *
+ * <p>In sequential mode the sources form a single chunk and the bins are processed one after another on the calling
+ * thread.
+ */
+final class PropagationBlockingPageRank {
+
+	private static final int BYTES_PER_VERTEX = 8;
+	/**
+	 * Upper bound on the number of bin segments, i.e. the number of chunks times the number of bins.
+	 */
+	private static final int MAX_SEGMENTS = 1 << 24;
+
+	private final CsrGraph graph;
+	private final PageRankParameters parameters;
+	private final boolean parallel;
+	private final int numVertices;
+	private final int blockWidth;
+	private final int numBins;
+	private final int numChunks;
+	private final PhaseTimer timer;
+
+	/**
+	 * @param parallel  whether the scatter and gather phases run on the fork-join pool
+	 * @param cacheSize size in bytes of the cache that should hold the rank sums of one block
+	 * @param timer     the timer that records the duration of every iteration
+	 */
+	PropagationBlockingPageRank(CsrGraph graph, PageRankParameters parameters, boolean parallel, long cacheSize,
+			PhaseTimer timer) {
+		this.graph = graph;
+		this.timer = timer;
+		this.parameters = parameters;
+		this.parallel = parallel;
+		this.numVertices = graph.getNumberOfVertices();
+		this.blockWidth = (int) Math.max(1, Math.min(Integer.MAX_VALUE, cacheSize / BYTES_PER_VERTEX));
+		this.numBins = (int) (((long) numVertices + blockWidth - 1) / blockWidth);
+		this.numChunks = !parallel ? 1 : Math.max(1, Math.min(Math.min(numVertices, Parallel.getParallelism() * 8),
+				MAX_SEGMENTS / Math.max(1, numBins)));
+	}
+
+	/**
+	 * @return true if the rank sums of the graph do not fit in a cache of the given size
+	 */
+	static boolean exceedsCache(CsrGraph graph, long cacheSize) {
+		return cacheSize > 0 && (long) graph.getNumberOfVertices() * BYTES_PER_VERTEX > cacheSize;
+	}
+
+	double[] run() {
+		final double dampingFactor = parameters.getDampingFactor();
+		final int numIterations = parameters.getNumberOfIterations();
+
+		// Split the sources into chunks with roughly equal numbers of edges, each scattered by one task
+		final int[] chunkStarts = new int[numChunks + 1];
+		long numEdges = graph.getNumberOfEdges();
+		for (int c = 1; c < numChunks; c++) {
+			chunkStarts[c] = firstVertexWithEdge(numEdges * c / numChunks, chunkStarts[c - 1]);
+		}
+		chunkStarts[numChunks] = numVertices;
+
+		// Lay out the bins one after another, with the edges of every chunk in a contiguous segment of each bin
+		final int[] segmentOffsets = new int[numChunks * numBins];
+		forEach(numChunks, new Parallel.IndexTask() {
+			@Override
+			public void run(int chunk) {
+				for (int e = edgesBegin(chunkStarts[chunk]), end = edgesBegin(chunkStarts[chunk + 1]); e < end; e++) {
+					segmentOffsets[chunk * numBins + graph.getOutNeighbour(e) / blockWidth]++;
+				}
+			}
+		});
+		final int[] binStarts = new int[numBins + 1];
+		int offset = 0;
+		for (int bin = 0; bin < numBins; bin++) {
+			binStarts[bin] = offset;
+			for (int chunk = 0; chunk < numChunks; chunk++) {
+				int count = segmentOffsets[chunk * numBins + bin];
+				segmentOffsets[chunk * numBins + bin] = offset;
+				offset += count;
+			}
+		}
+		binStarts[numBins] = offset;
+
+		final int[] binDestinations = new int[offset];
+		final double[] binContributions = new double[offset];
+		forEach(numChunks, new Parallel.IndexTask() {
+			@Override
+			public void run(int chunk) {
+				int[] cursors = new int[numBins];
+				System.arraycopy(segmentOffsets, chunk * numBins, cursors, 0, numBins);
+				for (int e = edgesBegin(chunkStarts[chunk]), end = edgesBegin(chunkStarts[chunk + 1]); e < end; e++) {
+					int destination = graph.getOutNeighbour(e);
+					binDestinations[cursors[destination / blockWidth]++] = destination;
+				}
+			}
+		});
+
+		// Initialize values, the sum of dangling ranks is kept per block and added in block order
+		final double[] ranks = new double[numVertices];
+		final double[] inverseOutDegrees = new double[numVertices];
+		final double[] sums = new double[numVertices];
+		final double[] danglingSums = new double[numBins];
+		forEach(numBins, new Parallel.IndexTask() {
+			@Override
+			public void run(int bin) {
+				double blockDanglingSum = 0.0;
+				for (int v = bin * blockWidth, end = blockEnd(bin); v < end; v++) {
+					int outDegree = graph.getOutDegree(v);
+					ranks[v] = 1.0 / numVertices;
+					if (outDegree == 0) {
+						blockDanglingSum += ranks[v];
+					} else {
+						inverseOutDegrees[v] = 1.0 / outDegree;
+					}
+				}
+				danglingSums[bin] = blockDanglingSum;
+			}
+		});
+		double danglingSum = PageRankJob.sum(danglingSums);
+
+		for (int it = 0; it < numIterations; it++) {
+			long iterationStart = timer.start();
+
+			// Scatter the contribution of every edge into its bin
+			forEach(numChunks, new Parallel.IndexTask() {
+				@Override
+				public void run(int chunk) {
+					int[] cursors = new int[numBins];
+					System.arraycopy(segmentOffsets, chunk * numBins, cursors, 0, numBins);
+					for (int u = chunkStarts[chunk]; u < chunkStarts[chunk + 1]; u++) {
+						double contribution = ranks[u] * inverseOutDegrees[u];
+						for (int e = graph.getOutEdgesBegin(u), end = graph.getOutEdgesEnd(u); e < end; e++) {
+							binContributions[cursors[graph.getOutNeighbour(e) / blockWidth]++] = contribution;
+						}
+					}
+				}
+			});
+
+			// Gather every bin into the rank sums of its block and compute the new ranks of the block
+			final double danglingShare = danglingSum / numVertices;
+			forEach(numBins, new Parallel.IndexTask() {
+				@Override
+				public void run(int bin) {
+					for (int i = binStarts[bin], end = binStarts[bin + 1]; i < end; i++) {
+						sums[binDestinations[i]] += binContributions[i];
+					}
+
+					double blockDanglingSum = 0.0;
+					for (int v = bin * blockWidth, end = blockEnd(bin); v < end; v++) {
+						double newRank = (1.0 - dampingFactor) / numVertices
+								+ dampingFactor * (sums[v] + danglingShare);
+						ranks[v] = newRank;
+						sums[v] = 0.0;
+						if (inverseOutDegrees[v] == 0.0) {
+							blockDanglingSum += newRank;
+						}
+					}
+					danglingSums[bin] = blockDanglingSum;
+				}
+			});
+			danglingSum = PageRankJob.sum(danglingSums);
+
+			timer.record(PhaseTimer.iterationPhase(it), iterationStart);
+		}
+
+		return ranks;
+	}
+
+	/**
+	 * Runs task(0), ..., task(numTasks - 1) on the fork-join pool in parallel mode, or in order on this thread.
+	 */
+	private void forEach(int numTasks, Parallel.IndexTask task) {
+		if (parallel) {
+			Parallel.forEach(numTasks, task);
+		} else {
+			for (int i = 0; i < numTasks; i++) {
+				task.run(i);
+			}
+		}
+	}
+
+	/**
+	 * @return the first outgoing edge of a vertex, or the number of edges for the vertex past the last one
+	 */
+	private int edgesBegin(int vertex) {
+		return vertex < numVertices ? graph.getOutEdgesBegin(vertex) : (int) graph.getNumberOfEdges();
+	}
+
+	private int blockEnd(int bin) {
+		return (int) Math.min((long) (bin + 1) * blockWidth, numVertices);
+	}
+
+	/**
+	 * @return the first vertex at or after from whose outgoing edges begin at or after the given edge
+	 */
+	private int firstVertexWithEdge(long edge, int from) {
+		int low = from;
+		int high = numVertices;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (edgesBegin(middle) < edge) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+}
@@ -0,0 +1,243 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.algorithms.sssp;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import science.atlarge.graphalytics.reference.graph.CsrGraph;
+import science.atlarge.graphalytics.reference.util.Parallel;
+import science.atlarge.graphalytics.reference.util.WorkCounters;
+
+/**
+ * Parallel delta-stepping shortest paths (Meyer and Sanders, "Delta-stepping: a parallelizable shortest path
+ * algorithm", J. Algorithms 2003). Vertices are kept in buckets of width delta by tentative distance. The lowest
+ * non-empty bucket is processed in phases that relax the light edges (weight at most delta) of all its vertices in
+ * parallel, until no vertex re-enters the bucket. The heavy edges of all vertices settled in the bucket are then
+ * relaxed once, as they can only reach later buckets.
+ *
+ * <p>Distances are stored as the bit patterns of non-negative doubles and lowered with compare-and-set. Every task
+ * collects the vertices it improves in its own bins, which are merged into the shared buckets when the task ends.
+ * A vertex may be present in several buckets; entries whose distance has since moved to an earlier bucket are
+ * skipped.
+ */
+final class DeltaStepping {
+
+	private static final long LAST_BUCKET = Long.MAX_VALUE;
+
+	private final CsrGraph graph;
+	private final double delta;
+	private final AtomicLongArray distances;
+	private final long[] heavyEdgesRelaxedAt;
+	private final AtomicLong edgesScanned;
+	private final AtomicLong relaxations;
+
+	private final TreeMap<Long, IntArrayList> buckets = new TreeMap<>();
+	private IntArrayList currentBucket;
+	private IntArrayList settled;
+
+	/**
+	 * @param delta    width of a bucket, must be positive
+	 * @param counters the counters that record the edges scanned and the distance improvements
+	 */
+	DeltaStepping(CsrGraph graph, double delta, WorkCounters counters) {
+		if (!(delta > 0)) {
+			throw new IllegalArgumentException("Delta must be positive: " + delta);
+		}
+		this.graph = graph;
+		this.delta = delta;
+		this.distances = new AtomicLongArray(graph.getNumberOfVertices());
+		this.heavyEdgesRelaxedAt = new long[graph.getNumberOfVertices()];
+		this.edgesScanned = counters.get(WorkCounters.EDGES_SCANNED);
+		this.relaxations = counters.get(SingleSourceShortestPathJob.RELAXATIONS);
+	}
+
+	/**
+	 * Chooses a bucket width of the maximum edge weight divided by the average out-degree, the setting for which
+	 * delta-stepping runs in linear time on graphs with random edge weights.
+	 */
+	static double estimateDelta(final CsrGraph graph) {
+		final AtomicLong maxWeightBits = new AtomicLong(Double.doubleToLongBits(0.0));
+		Parallel.forRange(0, graph.getNumberOfVertices(), 0, new Parallel.RangeTask() {
+			@Override
+			public void run(int from, int to) {
+				double maxWeight = 0.0;
+				for (int e = graph.getOutEdgesBegin(from), end = graph.getOutEdgesEnd(to - 1); e < end; e++) {
+					maxWeight = Math.max(maxWeight, graph.getOutWeight(e));
+				}
+				// Non-negative doubles have the same order as their bit patterns
+				long bits = Double.doubleToLongBits(maxWeight);
+				for (long current = maxWeightBits.get(); bits > current; current = maxWeightBits.get()) {
+					if (maxWeightBits.compareAndSet(current, bits)) {
+						break;
+					}
+				}
+			}
+		});
+
+		double maxWeight = Double.longBitsToDouble(maxWeightBits.get());
+		int numVertices = Math.max(1, graph.getNumberOfVertices());
+		double averageDegree = Math.max(1.0, (double) graph.getNumberOfEdges() / numVertices);
+		double delta = maxWeight / averageDegree;
+		return delta > 0 && !Double.isInfinite(delta) ? delta : 1.0;
+	}
+
+	double[] run(int source) {
+		final int numVertices = graph.getNumberOfVertices();
+		Parallel.forRange(0, numVertices, 0, new Parallel.RangeTask() {
+			@Override
+			public void run(int from, int to) {
+				long infinity = Double.doubleToLongBits(Double.POSITIVE_INFINITY);
+				for (int v = from; v < to; v++) {
+					distances.lazySet(v, infinity);
+					heavyEdgesRelaxedAt[v] = -1L;
+				}
+			}
+		});
+		distances.set(source, Double.doubleToLongBits(0.0));
+		IntArrayList sourceBucket = new IntArrayList();
+		sourceBucket.add(source);
+		buckets.put(bucketOf(0.0), sourceBucket);
+
+		while (!buckets.isEmpty()) {
+			Map.Entry<Long, IntArrayList> entry = buckets.pollFirstEntry();
+			long bucket = entry.getKey();
+			currentBucket = entry.getValue();
+			settled = new IntArrayList();
+
+			do {
+				// Relax light edges until the bucket stays empty, vertices may re-enter the bucket several times
+				while (!currentBucket.isEmpty()) {
+					IntArrayList frontier = currentBucket;
+					currentBucket = new IntArrayList();
+					relax(frontier, bucket, true);
+				}
+
+				// Relax heavy edges of all vertices settled in this bucket, these normally only reach later buckets
+				IntArrayList settledVertices = settled;
+				settled = new IntArrayList();
+				relax(settledVertices, bucket, false);
+			} while (!currentBucket.isEmpty());
+		}
+
+		final double[] result = new double[numVertices];
+		Parallel.forRange(0, numVertices, 0, new Parallel.RangeTask() {
+			@Override
+			public void run(int from, int to) {
+				for (int v = from; v < to; v++) {
+					result[v] = Double.longBitsToDouble(distances.get(v));
+				}
+			}
+		});
+		return result;
+	}
+
+	private void relax(final IntArrayList vertices, final long bucket, final boolean light) {
+		final int[] elements = vertices.elements();
+		Parallel.forRange(0, vertices.size(), 0, new Parallel.RangeTask() {
+			@Override
+			public void run(int from, int to) {
+				Long2ObjectMap<IntArrayList> bins = new Long2ObjectOpenHashMap<>();
+				IntArrayList settledVertices = new IntArrayList();
+				long scanned = 0;
+				long lowered = 0;
+				for (int i = from; i < to; i++) {
+					int vertex = elements[i];
+					long distanceBits = distances.get(vertex);
+					double distance = Double.longBitsToDouble(distanceBits);
+
+					// Skip entries of vertices that have since been moved to an earlier bucket
+					if (bucketOf(distance) != bucket) {
+						continue;
+					}
+					if (light) {
+						settledVertices.add(vertex);
+					} else if (heavyEdgesRelaxedAt[vertex] == distanceBits) {
+						// Vertex is settled more than once at the same distance
+						continue;
+					} else {
+						heavyEdgesRelaxedAt[vertex] = distanceBits;
+					}
+
+					for (int e = graph.getOutEdgesBegin(vertex), end = graph.getOutEdgesEnd(vertex); e < end; e++) {
+						double weight = graph.getOutWeight(e);
+						if ((weight <= delta) != light) {
+							continue;
+						}
+						scanned++;
+						int neighbour = graph.getOutNeighbour(e);
+						double newDistance = distance + weight;
+						if (lowerDistance(neighbour, newDistance)) {
+							lowered++;
+							long neighbourBucket = bucketOf(newDistance);
+							IntArrayList bin = bins.get(neighbourBucket);
+							if (bin == null) {
+								bin = new IntArrayList();
+								bins.put(neighbourBucket, bin);
+							}
+							bin.add(neighbour);
+						}
+					}
+				}
+				merge(bucket, bins, settledVertices);
+				edgesScanned.addAndGet(scanned);
+				relaxations.addAndGet(lowered);
+			}
+		});
+	}
+
+	private synchronized void merge(long bucket, Long2ObjectMap<IntArrayList> bins, IntArrayList settledVertices) {
+		settled.addAll(settledVertices);
+		for (Long2ObjectMap.Entry<IntArrayList> bin : bins.long2ObjectEntrySet()) {
+			if (bin.getLongKey() == bucket) {
+				currentBucket.addAll(bin.getValue());
+				continue;
+			}
+			IntArrayList target = buckets.get(bin.getLongKey());
+			if (target == null) {
+				buckets.put(bin.getLongKey(), bin.getValue());
+			} else {
+				target.addAll(bin.getValue());
+			}
+		}
+	}
+
+	/**
+	 * Atomically lowers the distance of a vertex.
+	 *
+	 * @return true if the new distance is lower than the current distance
+	 */
+	private boolean lowerDistance(int vertex, double newDistance) {
+		long newBits = Double.doubleToLongBits(newDistance);
+		for (long current = distances.get(vertex); newDistance < Double.longBitsToDouble(current);
+				current = distances.get(vertex)) {
+			if (distances.compareAndSet(vertex, current, newBits)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private long bucketOf(double distance) {
+		double bucket = distance / delta;
+		return bucket < LAST_BUCKET ? (long) bucket : LAST_BUCKET;
+	}
+}
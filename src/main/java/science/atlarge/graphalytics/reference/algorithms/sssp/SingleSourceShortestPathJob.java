@@ -18,18 +18,18 @@ package science.atlarge.graphalytics.reference.algorithms.sssp;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import it.unimi.dsi.fastutil.longs.Long2DoubleMap;
-import it.unimi.dsi.fastutil.longs.Long2DoubleOpenHashMap;
-import it.unimi.dsi.fastutil.longs.LongLinkedOpenHashSet;
-import it.unimi.dsi.fastutil.longs.LongSet;
 import science.atlarge.graphalytics.domain.algorithms.SingleSourceShortestPathsParameters;
-import science.atlarge.graphalytics.util.graph.PropertyGraph;
+import science.atlarge.graphalytics.reference.graph.CsrGraph;
+import science.atlarge.graphalytics.reference.graph.DoubleVertexValues;
+import science.atlarge.graphalytics.reference.util.IndexedMinHeap;
+import science.atlarge.graphalytics.reference.util.Parallel;
+import science.atlarge.graphalytics.reference.util.WorkCounters;
 
-import java.util.Comparator;
-import java.util.PriorityQueue;
+import java.util.Arrays;
 
 /**
- * Reference implementation of the Single Source Shortest Path algorithm.
+ * Reference implementation of the Single Source Shortest Path algorithm. Sequential runs use Dijkstra's algorithm,
+ * parallel runs use delta-stepping (see {@link DeltaStepping}).
  *
  * @author Tim Hegeman
  */
@@ -39,88 +39,110 @@ public class SingleSourceShortestPathJob {
 
 	private static final double MAX_DISTANCE = Double.POSITIVE_INFINITY;
 
-	private final PropertyGraph<Void, Double> graph;
+	/**
+	 * Name of the counter of the number of times the distance of a vertex is lowered.
+	 */
+	static final String RELAXATIONS = "relaxations";
+	private static final String HEAP_OPERATIONS = "heap operations";
+
+	private final CsrGraph graph;
 	private final SingleSourceShortestPathsParameters parameters;
+	private final boolean parallel;
+	private final double delta;
+	private WorkCounters counters = new WorkCounters();
+
+	/**
+	 * Creates a job that runs in parallel if the fork-join pool has more than one worker.
+	 */
+	public SingleSourceShortestPathJob(CsrGraph graph, SingleSourceShortestPathsParameters parameters) {
+		this(graph, parameters, Parallel.getParallelism() > 1, 0.0);
+	}
 
-	public SingleSourceShortestPathJob(PropertyGraph<Void, Double> graph, SingleSourceShortestPathsParameters parameters) {
+	/**
+	 * @param delta bucket width used by the parallel algorithm, or 0 to derive it from the edge weights
+	 */
+	public SingleSourceShortestPathJob(CsrGraph graph, SingleSourceShortestPathsParameters parameters,
+			boolean parallel, double delta) {
 		this.graph = graph;
 		this.parameters = parameters;
+		this.parallel = parallel;
+		this.delta = delta;
 	}
 
-	public Long2DoubleMap run() {
-		// This method presents a basic implementation of Dijkstra's shortest path algorithm.
-		LOG.debug("- Starting Single Source Shortest Path algorithm");
+	/**
+	 * Sets the counters that record the edges scanned, the distance improvements and, for Dijkstra's algorithm, the
+	 * heap operations.
+	 */
+	public void setWorkCounters(WorkCounters counters) {
+		this.counters = counters;
+	}
 
-		// Define data structures
-		Long2DoubleMap distances = new Long2DoubleOpenHashMap(); // for O(1) lookup for neighbors' distance
-		PriorityQueue<Vertex> queue = new PriorityQueue<>(graph.getVertices().size(), new Vertex()); // for O(log n) lookup for priority
-		LongSet visited = new LongLinkedOpenHashSet(); // for tracking duplicated queue items.
+	public DoubleVertexValues run() {
+		LOG.debug("- Starting Single Source Shortest Path algorithm");
 
-		// Initialize distances
-		for (PropertyGraph<Void, Double>.Vertex v : graph.getVertices()) {
-			distances.put(v.getId(), MAX_DISTANCE);
+		int source = graph.getVertexIndex(parameters.getSourceVertex());
+		if (source < 0) {
+			throw new IllegalArgumentException("Source vertex does not exist: " + parameters.getSourceVertex());
 		}
 
-		// Insert source vertex
-		distances.put(parameters.getSourceVertex(), 0.0);
-		queue.add(new Vertex(parameters.getSourceVertex(), 0.0));
-
-		// Iterate until pending set is empty
-		while (!queue.isEmpty()) {
-			Vertex minVertex = queue.remove();
-
-
-			// Inform the neighbors of this vertex
-			if (!visited.contains(minVertex.getId())) {
-				visited.add(minVertex.getId());
-
-				for (PropertyGraph<Void, Double>.Edge edge : graph.getVertex(minVertex.getId()).getOutgoingEdges()) {
-					long neighbor = edge.getDestinationVertex().getId();
-					double edgeDist = edge.getValue();
-					double newDist = minVertex.getDist() + edgeDist;
-
-					// If neighbor not in pending set or distance has improved
-					if (newDist < distances.get(neighbor)) {
-						queue.add(new Vertex(neighbor, newDist));
-						distances.put(neighbor, newDist);
-					}
-				}
-			}
+		double[] distances;
+		if (parallel) {
+			double bucketWidth = delta > 0 ? delta : DeltaStepping.estimateDelta(graph);
+			LOG.debug("- Using delta-stepping with delta " + bucketWidth);
+			distances = new DeltaStepping(graph, bucketWidth, counters).run(source);
+		} else {
+			distances = runDijkstra(source);
 		}
 
 		LOG.debug("- Finished Single Source Shortest Path algorithm");
 
-		return distances;
+		return new DoubleVertexValues(graph, distances);
 	}
 
-	private class Vertex implements Comparator<Vertex> {
-		private long id;
-		private double dist;
-
-		public Vertex() {
-		}
+	/**
+	 * Dijkstra's algorithm on an indexed heap. A vertex whose distance improves while it is in the heap has its key
+	 * decreased in place, so the heap holds every vertex at most once and no objects are allocated per edge.
+	 */
+	private double[] runDijkstra(int source) {
+		int numVertices = graph.getNumberOfVertices();
+		double[] distances = new double[numVertices];
+		IndexedMinHeap queue = new IndexedMinHeap(numVertices);
 
-		public Vertex(long id, double dist) {
-			this.id = id;
-			this.dist = dist;
-		}
+		// Initialize distances
+		Arrays.fill(distances, MAX_DISTANCE);
 
-		@Override
-		public int compare(Vertex v1, Vertex v2) {
-			if (v1.dist < v2.dist)
-				return -1;
-			if (v1.dist > v2.dist)
-				return 1;
-			return 0;
-		}
+		// Insert source vertex
+		distances[source] = 0.0;
+		queue.insertOrDecrease(source, 0.0);
+		long edgesScanned = 0;
+		long relaxations = 0;
+		long heapOperations = 1;
 
-		public long getId() {
-			return id;
-		}
+		// Iterate until pending set is empty, the distance of a removed vertex is final
+		while (!queue.isEmpty()) {
+			int minVertex = queue.poll();
+			double minDistance = distances[minVertex];
+			edgesScanned += graph.getOutDegree(minVertex);
+			heapOperations++;
 
-		public double getDist() {
-			return dist;
+			// Inform the neighbors of this vertex
+			for (int e = graph.getOutEdgesBegin(minVertex), end = graph.getOutEdgesEnd(minVertex); e < end; e++) {
+				int neighbor = graph.getOutNeighbour(e);
+				double newDist = minDistance + graph.getOutWeight(e);
+
+				// If neighbor not in pending set or distance has improved
+				if (newDist < distances[neighbor]) {
+					distances[neighbor] = newDist;
+					queue.insertOrDecrease(neighbor, newDist);
+					relaxations++;
+					heapOperations++;
+				}
+			}
 		}
 
+		counters.add(WorkCounters.EDGES_SCANNED, edgesScanned);
+		counters.add(RELAXATIONS, relaxations);
+		counters.add(HEAP_OPERATIONS, heapOperations);
+		return distances;
 	}
 }
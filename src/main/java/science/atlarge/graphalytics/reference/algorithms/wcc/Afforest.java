@@ -0,0 +1,229 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.algorithms.wcc;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+import it.unimi.dsi.fastutil.ints.Int2IntMap;
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import science.atlarge.graphalytics.reference.graph.CsrGraph;
+import science.atlarge.graphalytics.reference.util.Parallel;
+import science.atlarge.graphalytics.reference.util.WorkCounters;
+
+/**
+ * Parallel connected components with lock-free union-find and neighbour sampling (Sutton et al., "Optimizing
+ * Parallel Graph Connectivity Computation via Subgraph Sampling", IPDPS 2018). Every vertex first links to a few of
+ * its neighbours, which typically merges most of the graph into one large component. The component is identified
+ * by sampling, and only vertices outside it process their remaining edges.
+ *
+ * <p>A link always points the higher root at the lower one, so the root of every tree is the lowest vertex index in
+ * the component. The components are numbered in order of their roots, which gives the same component identifiers
+ * as a sequential traversal that starts a new component at every unassigned vertex in index order.
+ */
+final class Afforest {
+
+	private static final int NEIGHBOUR_ROUNDS = 2;
+	private static final int NUM_SAMPLES = 1024;
+
+	private final CsrGraph graph;
+	private final int numVertices;
+	private final AtomicIntegerArray parents;
+	private final AtomicLong edgesScanned;
+
+	/**
+	 * @param counters the counters that record the edges scanned
+	 */
+	Afforest(CsrGraph graph, WorkCounters counters) {
+		this.graph = graph;
+		this.edgesScanned = counters.get(WorkCounters.EDGES_SCANNED);
+		this.numVertices = graph.getNumberOfVertices();
+		this.parents = new AtomicIntegerArray(numVertices);
+	}
+
+	long[] run() {
+		Parallel.forRange(0, numVertices, 0, new Parallel.RangeTask() {
+			@Override
+			public void run(int from, int to) {
+				for (int v = from; v < to; v++) {
+					parents.lazySet(v, v);
+				}
+			}
+		});
+
+		// Link every vertex to its first few outgoing neighbours
+		for (int round = 0; round < NEIGHBOUR_ROUNDS; round++) {
+			final int offset = round;
+			Parallel.forRange(0, numVertices, 0, new Parallel.RangeTask() {
+				@Override
+				public void run(int from, int to) {
+					long scanned = 0;
+					for (int v = from; v < to; v++) {
+						int e = graph.getOutEdgesBegin(v) + offset;
+						if (e < graph.getOutEdgesEnd(v)) {
+							link(v, graph.getOutNeighbour(e));
+							scanned++;
+						}
+					}
+					edgesScanned.addAndGet(scanned);
+				}
+			});
+			compress();
+		}
+
+		// Process the remaining edges of all vertices outside the largest component. Edges from a vertex inside the
+		// component to one outside are found from the other endpoint, through its incoming edges if directed.
+		final int largestComponent = sampleLargestComponent();
+		final boolean directed = graph.isDirected();
+		Parallel.forRange(0, numVertices, 0, new Parallel.RangeTask() {
+			@Override
+			public void run(int from, int to) {
+				long scanned = 0;
+				for (int v = from; v < to; v++) {
+					if (parents.get(v) == largestComponent) {
+						continue;
+					}
+					int begin = graph.getOutEdgesBegin(v) + NEIGHBOUR_ROUNDS;
+					int end = graph.getOutEdgesEnd(v);
+					for (int e = begin; e < end; e++) {
+						link(v, graph.getOutNeighbour(e));
+					}
+					scanned += Math.max(0, end - begin);
+					if (directed) {
+						end = graph.getInEdgesEnd(v);
+						for (int e = graph.getInEdgesBegin(v); e < end; e++) {
+							link(v, graph.getInNeighbour(e));
+						}
+						scanned += graph.getInDegree(v);
+					}
+				}
+				edgesScanned.addAndGet(scanned);
+			}
+		});
+		compress();
+
+		return relabel();
+	}
+
+	/**
+	 * Merges the trees of two vertices by pointing the higher of the two roots at the lower one.
+	 */
+	private void link(int u, int v) {
+		int p1 = parents.get(u);
+		int p2 = parents.get(v);
+		while (p1 != p2) {
+			int high = Math.max(p1, p2);
+			int low = Math.min(p1, p2);
+			int highParent = parents.get(high);
+			if (highParent == low || (highParent == high && parents.compareAndSet(high, high, low))) {
+				break;
+			}
+			p1 = parents.get(parents.get(high));
+			p2 = parents.get(low);
+		}
+	}
+
+	/**
+	 * Points every vertex directly at its root.
+	 */
+	private void compress() {
+		Parallel.forRange(0, numVertices, 0, new Parallel.RangeTask() {
+			@Override
+			public void run(int from, int to) {
+				for (int v = from; v < to; v++) {
+					int parent = parents.get(v);
+					for (int grandparent = parents.get(parent); parent != grandparent;
+							grandparent = parents.get(parent)) {
+						parent = grandparent;
+					}
+					parents.lazySet(v, parent);
+				}
+			}
+		});
+	}
+
+	/**
+	 * @return the root of the most frequent component among a fixed random sample of vertices
+	 */
+	private int sampleLargestComponent() {
+		if (numVertices == 0) {
+			return -1;
+		}
+		Random random = new Random(numVertices);
+		Int2IntMap counts = new Int2IntOpenHashMap();
+		int largestComponent = -1;
+		int largestCount = 0;
+		for (int i = 0; i < NUM_SAMPLES; i++) {
+			int component = parents.get(random.nextInt(numVertices));
+			int count = counts.get(component) + 1;
+			counts.put(component, count);
+			if (count > largestCount) {
+				largestComponent = component;
+				largestCount = count;
+			}
+		}
+		return largestComponent;
+	}
+
+	/**
+	 * Numbers the components in order of their roots and assigns every vertex the number of its component.
+	 */
+	private long[] relabel() {
+		final long[] components = new long[numVertices];
+		final int numBlocks = Math.max(1, Math.min(numVertices, Parallel.getParallelism() * 4));
+		final long[] blockOffsets = new long[numBlocks + 1];
+		Parallel.forEach(numBlocks, new Parallel.IndexTask() {
+			@Override
+			public void run(int block) {
+				long numRoots = 0;
+				for (int v = blockStart(block, numBlocks); v < blockStart(block + 1, numBlocks); v++) {
+					if (parents.get(v) == v) {
+						numRoots++;
+					}
+				}
+				blockOffsets[block + 1] = numRoots;
+			}
+		});
+		for (int block = 0; block < numBlocks; block++) {
+			blockOffsets[block + 1] += blockOffsets[block];
+		}
+		Parallel.forEach(numBlocks, new Parallel.IndexTask() {
+			@Override
+			public void run(int block) {
+				long component = blockOffsets[block];
+				for (int v = blockStart(block, numBlocks); v < blockStart(block + 1, numBlocks); v++) {
+					if (parents.get(v) == v) {
+						components[v] = component++;
+					}
+				}
+			}
+		});
+		Parallel.forRange(0, numVertices, 0, new Parallel.RangeTask() {
+			@Override
+			public void run(int from, int to) {
+				for (int v = from; v < to; v++) {
+					components[v] = components[parents.get(v)];
+				}
+			}
+		});
+		return components;
+	}
+
+	private int blockStart(int block, int numBlocks) {
+		return (int) ((long) numVertices * block / numBlocks);
+	}
+}
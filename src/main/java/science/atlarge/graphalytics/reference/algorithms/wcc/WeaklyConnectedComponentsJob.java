@@ -15,77 +15,108 @@
  */
 package science.atlarge.graphalytics.reference.algorithms.wcc;
 
-import java.util.Collection;
+import java.util.Arrays;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import it.unimi.dsi.fastutil.longs.AbstractLongPriorityQueue;
-import it.unimi.dsi.fastutil.longs.Long2LongMap;
-import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
-import it.unimi.dsi.fastutil.longs.LongArrayFIFOQueue;
-import science.atlarge.graphalytics.util.graph.PropertyGraph;
+import science.atlarge.graphalytics.reference.graph.CsrGraph;
+import science.atlarge.graphalytics.reference.graph.LongVertexValues;
+import science.atlarge.graphalytics.reference.util.Parallel;
+import science.atlarge.graphalytics.reference.util.WorkCounters;
 
 /**
- * Reference implementation of connected components algorithm.
+ * Reference implementation of connected components algorithm. Sequential runs traverse every component from its
+ * lowest vertex, parallel runs use union-find (see {@link Afforest}). Both number the components in order of their
+ * lowest vertex.
  *
  * @author Stijn Heldens
  */
 public class WeaklyConnectedComponentsJob {
 	private static final Logger LOG = LogManager.getLogger();
 
-	private final PropertyGraph<Void, Void> graph;
+	private final CsrGraph graph;
+	private final boolean parallel;
+	private WorkCounters counters = new WorkCounters();
 
-	public WeaklyConnectedComponentsJob(PropertyGraph<Void, Void> graph) {
+	/**
+	 * Creates a job that runs in parallel if the fork-join pool has more than one worker.
+	 */
+	public WeaklyConnectedComponentsJob(CsrGraph graph) {
+		this(graph, Parallel.getParallelism() > 1);
+	}
+
+	public WeaklyConnectedComponentsJob(CsrGraph graph, boolean parallel) {
 		this.graph = graph;
+		this.parallel = parallel;
+	}
+
+	/**
+	 * Sets the counters that record the edges scanned.
+	 */
+	public void setWorkCounters(WorkCounters counters) {
+		this.counters = counters;
 	}
 
-	public Long2LongMap run() {
+	public LongVertexValues run() {
 		LOG.debug("- Starting connected components algorithm");
 
-		Long2LongMap vertex2component = new Long2LongOpenHashMap();
+		long[] vertex2component = parallel ? new Afforest(graph, counters).run() : runSequential();
+
+		LOG.debug("- Finished connected components");
+
+		return new LongVertexValues(graph, vertex2component);
+	}
+
+	private long[] runSequential() {
+		int numVertices = graph.getNumberOfVertices();
+		long[] vertex2component = new long[numVertices];
+		Arrays.fill(vertex2component, -1L);
 		long numComponents = 0;
 
-		for (PropertyGraph<Void, Void>.Vertex v: graph.getVertices()) {
-			long id = v.getId();
+		// Traversal queue shared by all components, every vertex is enqueued exactly once
+		int[] queue = new int[numVertices];
 
+		for (int v = 0; v < numVertices; v++) {
 			// skip vertex if already assigned to component
-			if (vertex2component.containsKey(id)) {
+			if (vertex2component[v] >= 0) {
 				continue;
 			}
 
 			// Assign to new component
 			long componentId = numComponents++;
-			vertex2component.put(id, componentId);
+			vertex2component[v] = componentId;
 
 			// Perform BFS starting at v to find members of component
-			AbstractLongPriorityQueue queue = new LongArrayFIFOQueue();
-			queue.enqueue(id);
-
-			while (!queue.isEmpty()) {
-				PropertyGraph<Void, Void>.Vertex u = graph.getVertex(queue.dequeueLong());
+			int head = 0;
+			int tail = 0;
+			queue[tail++] = v;
 
-				for (int i = 0; i < 2; i++) {
-					Collection<PropertyGraph<Void, Void>.Edge> edges =
-							i == 0 ?
-							u.getOutgoingEdges() :
-							u.getIncomingEdges();
+			while (head < tail) {
+				int u = queue[head++];
 
-					for (PropertyGraph<Void, Void>.Edge edge: edges) {
-						long neighbour = edge.getOtherEndpoint(u).getId();
+				for (int e = graph.getOutEdgesBegin(u), end = graph.getOutEdgesEnd(u); e < end; e++) {
+					int neighbour = graph.getOutNeighbour(e);
 
-						if (!vertex2component.containsKey(neighbour)) {
-							vertex2component.put(neighbour, componentId);
-							queue.enqueue(neighbour);
-						}
+					if (vertex2component[neighbour] < 0) {
+						vertex2component[neighbour] = componentId;
+						queue[tail++] = neighbour;
 					}
+				}
+
+				for (int e = graph.getInEdgesBegin(u), end = graph.getInEdgesEnd(u); e < end; e++) {
+					int neighbour = graph.getInNeighbour(e);
 
+					if (vertex2component[neighbour] < 0) {
+						vertex2component[neighbour] = componentId;
+						queue[tail++] = neighbour;
+					}
 				}
 			}
 		}
 
-		LOG.debug("- Finished connected components");
-
+		// Every vertex is dequeued once and scans its outgoing and incoming edges
+		counters.add(WorkCounters.EDGES_SCANNED, 2 * graph.getNumberOfEdges());
 		return vertex2component;
 	}
 }
@@ -0,0 +1,256 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.graph;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads whitespace-separated numbers from the lines that start within a byte range of a text file. A line belongs
+ * to the range containing its first byte, so adjacent ranges of the same file together cover every line exactly
+ * once. Numbers are parsed directly from the bytes of the file without creating intermediate Strings.
+ */
+final class ByteRangeReader {
+
+	private static final int BUFFER_SIZE = 1 << 16;
+	private static final int MAX_TOKEN_LENGTH = 64;
+
+	// Powers of ten that are exactly representable as a double
+	private static final double[] POWERS_OF_TEN = {
+			1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+			1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+	};
+
+	private final FileChannel channel;
+	private final long end;
+
+	private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+	private final byte[] bytes = buffer.array();
+	private long bufferOffset;
+	private int position;
+	private int limit;
+
+	private final char[] token = new char[MAX_TOKEN_LENGTH];
+	private int tokenLength;
+	private boolean inLine;
+
+	/**
+	 * @param channel channel of the file to read, accessed only through positional reads
+	 * @param start   offset of the first byte of the range
+	 * @param end     offset of the first byte after the range
+	 */
+	ByteRangeReader(FileChannel channel, long start, long end) throws IOException {
+		this.channel = channel;
+		this.end = end;
+		if (start > 0) {
+			// Skip the line that started in the previous range, unless it ended exactly at the range boundary
+			bufferOffset = start - 1;
+			inLine = true;
+		} else {
+			bufferOffset = 0;
+		}
+	}
+
+	/**
+	 * Advances to the next non-empty line starting within the range, skipping the rest of the current line.
+	 *
+	 * @return false if there are no more lines in the range
+	 */
+	boolean nextLine() throws IOException {
+		if (inLine) {
+			skipLine();
+		}
+		while (true) {
+			if (offset() >= end) {
+				return false;
+			}
+			skipBlanks();
+			int next = peek();
+			if (next < 0) {
+				return false;
+			} else if (next == '\n') {
+				position++;
+			} else {
+				inLine = true;
+				return true;
+			}
+		}
+	}
+
+	long parseLong() throws IOException {
+		readToken();
+		int i = 0;
+		boolean negative = false;
+		if (tokenLength > 0 && (token[0] == '-' || token[0] == '+')) {
+			negative = token[0] == '-';
+			i++;
+		}
+		if (i == tokenLength || tokenLength - i > 18) {
+			// Empty, sign-only or possibly overflowing numbers take the slow path for proper error handling
+			return parseLongSlow();
+		}
+		long value = 0;
+		for (; i < tokenLength; i++) {
+			int digit = token[i] - '0';
+			if (digit < 0 || digit > 9) {
+				throw malformed("integer");
+			}
+			value = value * 10 + digit;
+		}
+		return negative ? -value : value;
+	}
+
+	/**
+	 * Parses a decimal number. Numbers with at most 15 significant digits and a small exponent are converted
+	 * exactly using a single double multiplication or division; all other inputs fall back to Double.parseDouble.
+	 */
+	double parseDouble() throws IOException {
+		readToken();
+		int i = 0;
+		boolean negative = false;
+		if (tokenLength > 0 && (token[0] == '-' || token[0] == '+')) {
+			negative = token[0] == '-';
+			i++;
+		}
+
+		long mantissa = 0;
+		int digits = 0;
+		int exponent = 0;
+		boolean seenDigit = false;
+		for (; i < tokenLength && token[i] >= '0' && token[i] <= '9'; i++) {
+			seenDigit = true;
+			mantissa = mantissa * 10 + (token[i] - '0');
+			digits += mantissa != 0 ? 1 : 0;
+		}
+		if (i < tokenLength && token[i] == '.') {
+			for (i++; i < tokenLength && token[i] >= '0' && token[i] <= '9'; i++) {
+				seenDigit = true;
+				mantissa = mantissa * 10 + (token[i] - '0');
+				digits += mantissa != 0 ? 1 : 0;
+				exponent--;
+			}
+		}
+		if (i < tokenLength && (token[i] == 'e' || token[i] == 'E')) {
+			i++;
+			boolean negativeExponent = false;
+			if (i < tokenLength && (token[i] == '-' || token[i] == '+')) {
+				negativeExponent = token[i] == '-';
+				i++;
+			}
+			int explicitExponent = 0;
+			int exponentStart = i;
+			for (; i < tokenLength && token[i] >= '0' && token[i] <= '9' && explicitExponent < 10000; i++) {
+				explicitExponent = explicitExponent * 10 + (token[i] - '0');
+			}
+			if (i == exponentStart) {
+				return parseDoubleSlow();
+			}
+			exponent += negativeExponent ? -explicitExponent : explicitExponent;
+		}
+
+		if (!seenDigit || i != tokenLength || digits > 15 || exponent < -22 || exponent > 22) {
+			return parseDoubleSlow();
+		}
+		double value = exponent >= 0 ? mantissa * POWERS_OF_TEN[exponent] : mantissa / POWERS_OF_TEN[-exponent];
+		return negative ? -value : value;
+	}
+
+	long offset() {
+		return bufferOffset + position;
+	}
+
+	private long parseLongSlow() throws IOException {
+		try {
+			return Long.parseLong(new String(token, 0, tokenLength));
+		} catch (NumberFormatException e) {
+			throw malformed("integer");
+		}
+	}
+
+	private double parseDoubleSlow() throws IOException {
+		try {
+			return Double.parseDouble(new String(token, 0, tokenLength));
+		} catch (NumberFormatException e) {
+			throw malformed("number");
+		}
+	}
+
+	private IOException malformed(String expected) {
+		return new IOException("Expected " + expected + " but found \"" + new String(token, 0, tokenLength)
+				+ "\" before byte offset " + offset());
+	}
+
+	private void readToken() throws IOException {
+		skipBlanks();
+		tokenLength = 0;
+		int next;
+		while ((next = peek()) >= 0 && !isBlank(next) && next != '\n') {
+			if (tokenLength == MAX_TOKEN_LENGTH) {
+				throw new IOException("Token too long before byte offset " + offset());
+			}
+			token[tokenLength++] = (char) next;
+			position++;
+		}
+		if (tokenLength == 0) {
+			throw new IOException("Missing value before byte offset " + offset());
+		}
+	}
+
+	private void skipLine() throws IOException {
+		int next;
+		while ((next = peek()) >= 0) {
+			position++;
+			if (next == '\n') {
+				break;
+			}
+		}
+		inLine = false;
+	}
+
+	private void skipBlanks() throws IOException {
+		int next;
+		while ((next = peek()) >= 0 && isBlank(next)) {
+			position++;
+		}
+	}
+
+	private static boolean isBlank(int b) {
+		return b == ' ' || b == '\t' || b == '\r';
+	}
+
+	private int peek() throws IOException {
+		if (position == limit && !fill()) {
+			return -1;
+		}
+		return bytes[position];
+	}
+
+	private boolean fill() throws IOException {
+		bufferOffset += position;
+		position = 0;
+		limit = 0;
+		buffer.clear();
+		while (buffer.hasRemaining()) {
+			int read = channel.read(buffer, bufferOffset + buffer.position());
+			if (read < 0) {
+				break;
+			}
+		}
+		limit = buffer.position();
+		return limit > 0;
+	}
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.graph;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import science.atlarge.graphalytics.util.graph.PropertyGraph;
+
+/**
+ * Graph stored in compressed sparse row (CSR) format. Vertices are identified by a dense index in [0, n), assigned
+ * in ascending order of their original vertex identifiers. The outgoing edges of vertex v are the edge indices in
+ * [getOutEdgesBegin(v), getOutEdgesEnd(v)), sorted by neighbour index, and likewise for incoming edges. Undirected
+ * graphs store every edge in both directions and have identical outgoing and incoming edges. Edge indices are ints,
+ * so a graph stores at most {@link #MAX_EDGES} edges; building a larger graph fails with an
+ * IllegalArgumentException.
+ *
+ * <p>The mapping between vertex identifiers and indices is described by {@link VertexIdMap}. The CSR arrays are
+ * either held on the heap ({@link HeapCsrGraph}) or mapped from a binary graph file ({@link MappedCsrGraph}).
+ */
+public abstract class CsrGraph {
+
+	/**
+	 * Maximum number of stored edges, counting both directions of undirected edges.
+	 */
+	public static final long MAX_EDGES = Integer.MAX_VALUE;
+
+	CsrGraph() {
+	}
+
+	public abstract int getNumberOfVertices();
+
+	/**
+	 * @return the number of stored outgoing edges, i.e. twice the number of edges for undirected graphs
+	 */
+	public abstract long getNumberOfEdges();
+
+	public abstract boolean isDirected();
+
+	public abstract boolean isWeighted();
+
+	public abstract long getVertexId(int vertex);
+
+	/**
+	 * @param vertexId original identifier of a vertex
+	 * @return the index of the vertex, or -1 if the graph does not contain the vertex
+	 */
+	public int getVertexIndex(long vertexId) {
+		int low = 0;
+		int high = getNumberOfVertices() - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			long middleId = getVertexId(middle);
+			if (middleId < vertexId) {
+				low = middle + 1;
+			} else if (middleId > vertexId) {
+				high = middle - 1;
+			} else {
+				return middle;
+			}
+		}
+		return -1;
+	}
+
+	public int getOutDegree(int vertex) {
+		return getOutEdgesEnd(vertex) - getOutEdgesBegin(vertex);
+	}
+
+	public abstract int getOutEdgesBegin(int vertex);
+
+	public abstract int getOutEdgesEnd(int vertex);
+
+	public abstract int getOutNeighbour(int edge);
+
+	public abstract double getOutWeight(int edge);
+
+	public int getInDegree(int vertex) {
+		return getInEdgesEnd(vertex) - getInEdgesBegin(vertex);
+	}
+
+	public abstract int getInEdgesBegin(int vertex);
+
+	public abstract int getInEdgesEnd(int vertex);
+
+	public abstract int getInNeighbour(int edge);
+
+	/**
+	 * Converts a PropertyGraph to CSR format. Edge values are stored as weights if they are numeric. For undirected
+	 * graphs the PropertyGraph is expected to contain every edge in both directions.
+	 */
+	public static HeapCsrGraph fromPropertyGraph(PropertyGraph<?, ?> graph, boolean directed) {
+		long[] vertexIds = new long[graph.getVertices().size()];
+		int numVertices = 0;
+		boolean weighted = false;
+		for (PropertyGraph<?, ?>.Vertex v : graph.getVertices()) {
+			vertexIds[numVertices++] = v.getId();
+			for (PropertyGraph<?, ?>.Edge e : v.getOutgoingEdges()) {
+				weighted = weighted || e.getValue() instanceof Number;
+			}
+		}
+		Arrays.sort(vertexIds);
+		VertexIdMap vertexIdMap = VertexIdMap.fromSortedIds(vertexIds);
+
+		CsrGraphBuilder.EdgeBlock edges = new CsrGraphBuilder.EdgeBlock();
+		for (PropertyGraph<?, ?>.Vertex v : graph.getVertices()) {
+			int source = vertexIdMap.getIndex(v.getId());
+			for (PropertyGraph<?, ?>.Edge e : v.getOutgoingEdges()) {
+				int destination = vertexIdMap.getIndex(e.getDestinationVertex().getId());
+				if (weighted) {
+					edges.add(source, destination, ((Number) e.getValue()).doubleValue());
+				} else {
+					edges.add(source, destination);
+				}
+			}
+		}
+
+		return new CsrGraphBuilder(vertexIds, directed, false, weighted).build(Collections.singletonList(edges));
+	}
+}
@@ -0,0 +1,240 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.graph;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import it.unimi.dsi.fastutil.Swapper;
+import it.unimi.dsi.fastutil.doubles.DoubleArrayList;
+import it.unimi.dsi.fastutil.ints.AbstractIntComparator;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import science.atlarge.graphalytics.reference.util.Parallel;
+
+/**
+ * Builds the CSR arrays of a graph from blocks of edges in parallel. Degrees are counted with atomic increments,
+ * converted to offsets with a blocked parallel prefix sum, and edges are then scattered to their final positions.
+ * Finally, the neighbours of every vertex are sorted so that the result does not depend on thread scheduling.
+ */
+final class CsrGraphBuilder {
+
+	private final long[] vertexIds;
+	private final boolean directed;
+	private final boolean mirrorEdges;
+	private final boolean weighted;
+
+	/**
+	 * @param vertexIds   sorted original identifiers of all vertices
+	 * @param directed    true iff the graph is directed
+	 * @param mirrorEdges true iff every edge must also be stored in the reverse direction, as for undirected edge
+	 *                    files that list every edge once
+	 * @param weighted    true iff edges have weights
+	 */
+	CsrGraphBuilder(long[] vertexIds, boolean directed, boolean mirrorEdges, boolean weighted) {
+		this.vertexIds = vertexIds;
+		this.directed = directed;
+		this.mirrorEdges = mirrorEdges;
+		this.weighted = weighted;
+	}
+
+	/**
+	 * A block of edges between vertex indices, e.g. the edges parsed from one range of an edge file.
+	 */
+	static final class EdgeBlock {
+		final IntArrayList sources = new IntArrayList();
+		final IntArrayList destinations = new IntArrayList();
+		final DoubleArrayList weights = new DoubleArrayList();
+
+		void add(int source, int destination) {
+			sources.add(source);
+			destinations.add(destination);
+		}
+
+		void add(int source, int destination, double weight) {
+			add(source, destination);
+			weights.add(weight);
+		}
+
+		int size() {
+			return sources.size();
+		}
+	}
+
+	HeapCsrGraph build(final List<EdgeBlock> blocks) {
+		final int numVertices = vertexIds.length;
+
+		// Count the degree of every vertex
+		final AtomicIntegerArray outDegrees = new AtomicIntegerArray(numVertices);
+		final AtomicIntegerArray inDegrees = directed ? new AtomicIntegerArray(numVertices) : null;
+		Parallel.forEach(blocks.size(), new Parallel.IndexTask() {
+			@Override
+			public void run(int index) {
+				EdgeBlock block = blocks.get(index);
+				int[] sources = block.sources.elements();
+				int[] destinations = block.destinations.elements();
+				for (int e = 0, size = block.size(); e < size; e++) {
+					outDegrees.incrementAndGet(sources[e]);
+					if (mirrorEdges) {
+						outDegrees.incrementAndGet(destinations[e]);
+					}
+					if (directed) {
+						inDegrees.incrementAndGet(destinations[e]);
+						if (mirrorEdges) {
+							inDegrees.incrementAndGet(sources[e]);
+						}
+					}
+				}
+			}
+		});
+
+		// Compute offsets and scatter every edge to its position
+		final int[] outOffsets = prefixSum(outDegrees);
+		final int[] outNeighbours = new int[outOffsets[numVertices]];
+		final double[] outWeights = weighted ? new double[outNeighbours.length] : null;
+		final int[] inOffsets = directed ? prefixSum(inDegrees) : outOffsets;
+		final int[] inNeighbours = directed ? new int[inOffsets[numVertices]] : outNeighbours;
+		final AtomicIntegerArray outPositions = toAtomic(outOffsets);
+		final AtomicIntegerArray inPositions = directed ? toAtomic(inOffsets) : null;
+		Parallel.forEach(blocks.size(), new Parallel.IndexTask() {
+			@Override
+			public void run(int index) {
+				EdgeBlock block = blocks.get(index);
+				int[] sources = block.sources.elements();
+				int[] destinations = block.destinations.elements();
+				double[] weights = block.weights.elements();
+				for (int e = 0, size = block.size(); e < size; e++) {
+					int source = sources[e];
+					int destination = destinations[e];
+					int position = outPositions.getAndIncrement(source);
+					outNeighbours[position] = destination;
+					if (weighted) {
+						outWeights[position] = weights[e];
+					}
+					if (mirrorEdges) {
+						position = outPositions.getAndIncrement(destination);
+						outNeighbours[position] = source;
+						if (weighted) {
+							outWeights[position] = weights[e];
+						}
+					}
+					if (directed) {
+						inNeighbours[inPositions.getAndIncrement(destination)] = source;
+						if (mirrorEdges) {
+							inNeighbours[inPositions.getAndIncrement(source)] = destination;
+						}
+					}
+				}
+			}
+		});
+
+		Parallel.forRange(0, numVertices, 0, new Parallel.RangeTask() {
+			@Override
+			public void run(int from, int to) {
+				sortNeighbours(outOffsets, outNeighbours, outWeights, from, to);
+				if (directed) {
+					sortNeighbours(inOffsets, inNeighbours, null, from, to);
+				}
+			}
+		});
+
+		return new HeapCsrGraph(vertexIds, directed, outOffsets, outNeighbours, outWeights, inOffsets, inNeighbours);
+	}
+
+	static AtomicIntegerArray toAtomic(int[] offsets) {
+		return new AtomicIntegerArray(Arrays.copyOf(offsets, offsets.length - 1));
+	}
+
+	/**
+	 * Computes the exclusive prefix sum of the degrees, using one block of vertices per task.
+	 */
+	static int[] prefixSum(final AtomicIntegerArray degrees) {
+		final int numVertices = degrees.length();
+		final int[] offsets = new int[numVertices + 1];
+		final int numBlocks = Math.max(1, Math.min(numVertices, Parallel.getParallelism() * 4));
+		final long[] blockSums = new long[numBlocks + 1];
+
+		Parallel.forEach(numBlocks, new Parallel.IndexTask() {
+			@Override
+			public void run(int block) {
+				long sum = 0;
+				for (int v = blockStart(block, numBlocks, numVertices), end = blockStart(block + 1, numBlocks, numVertices); v < end; v++) {
+					sum += degrees.get(v);
+				}
+				blockSums[block + 1] = sum;
+			}
+		});
+		for (int block = 0; block < numBlocks; block++) {
+			blockSums[block + 1] += blockSums[block];
+		}
+		if (blockSums[numBlocks] > CsrGraph.MAX_EDGES) {
+			throw new IllegalArgumentException("Graph has " + blockSums[numBlocks]
+					+ " stored edges, more than the CSR format supports (" + CsrGraph.MAX_EDGES + ")");
+		}
+		Parallel.forEach(numBlocks, new Parallel.IndexTask() {
+			@Override
+			public void run(int block) {
+				int offset = (int) blockSums[block];
+				for (int v = blockStart(block, numBlocks, numVertices), end = blockStart(block + 1, numBlocks, numVertices); v < end; v++) {
+					offsets[v] = offset;
+					offset += degrees.get(v);
+				}
+			}
+		});
+		offsets[numVertices] = (int) blockSums[numBlocks];
+		return offsets;
+	}
+
+	private static int blockStart(int block, int numBlocks, int size) {
+		return (int) ((long) block * size / numBlocks);
+	}
+
+	/**
+	 * Sorts the neighbours of vertices [from, to) by index, permuting the weights (if any) accordingly. Parallel
+	 * edges are ordered by weight.
+	 */
+	static void sortNeighbours(int[] offsets, final int[] neighbours, final double[] weights, int from, int to) {
+		if (weights == null) {
+			for (int v = from; v < to; v++) {
+				IntArrays.quickSort(neighbours, offsets[v], offsets[v + 1]);
+			}
+			return;
+		}
+
+		AbstractIntComparator comparator = new AbstractIntComparator() {
+			@Override
+			public int compare(int a, int b) {
+				int result = Integer.compare(neighbours[a], neighbours[b]);
+				return result != 0 ? result : Double.compare(weights[a], weights[b]);
+			}
+		};
+		Swapper swapper = new Swapper() {
+			@Override
+			public void swap(int a, int b) {
+				int neighbour = neighbours[a];
+				neighbours[a] = neighbours[b];
+				neighbours[b] = neighbour;
+				double weight = weights[a];
+				weights[a] = weights[b];
+				weights[b] = weight;
+			}
+		};
+		for (int v = from; v < to; v++) {
+			it.unimi.dsi.fastutil.Arrays.quickSort(offsets[v], offsets[v + 1], comparator, swapper);
+		}
+	}
+}
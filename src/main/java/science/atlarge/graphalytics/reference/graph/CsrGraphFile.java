@@ -0,0 +1,431 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.graph;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Binary on-disk representation of a {@link CsrGraph}, used to cache a parsed graph between benchmark runs.
+ *
+ * <p>The file starts with a fixed-size header that records the graph dimensions, the size and modification time of
+ * the text files the graph was parsed from, and checksums of the header and the payload. The payload consists of
+ * the vertex identifiers followed by the out-edge arrays and, for directed graphs, the in-edge arrays. Every
+ * section starts at a multiple of eight bytes and all values are stored in little-endian byte order. Like every
+ * {@link CsrGraph}, a file holds at most {@link CsrGraph#MAX_EDGES} stored edges.
+ */
+public final class CsrGraphFile {
+
+	private static final long MAGIC = 0x3130305253434147L; // "GACSR001" in little-endian order
+	private static final int VERSION = 1;
+	static final int HEADER_SIZE = 128;
+
+	private static final int FLAG_DIRECTED = 1;
+	private static final int FLAG_WEIGHTED = 2;
+
+	private static final int BUFFER_SIZE = 4 << 20;
+
+	private CsrGraphFile() {
+	}
+
+	/**
+	 * @return the location of the cached binary graph for the given edge file
+	 */
+	public static Path getCachePath(String edgeFilePath) {
+		return Paths.get(edgeFilePath + ".csr");
+	}
+
+	/**
+	 * Writes a graph to a binary file. The file is written under a temporary name and then moved into place, so an
+	 * interrupted write never leaves a partial file at the target location.
+	 *
+	 * @param graph          the graph to write
+	 * @param file           the file to write to
+	 * @param vertexFilePath the vertex file the graph was loaded from
+	 * @param edgeFilePath   the edge file the graph was loaded from
+	 */
+	public static void write(HeapCsrGraph graph, Path file, String vertexFilePath, String edgeFilePath)
+			throws IOException {
+		Path temporaryFile = file.resolveSibling(file.getFileName() + ".tmp");
+		int numVertices = graph.getNumberOfVertices();
+		long numEdges = graph.getNumberOfEdges();
+		if (numEdges > CsrGraph.MAX_EDGES) {
+			throw new IllegalArgumentException("Graph has " + numEdges
+					+ " stored edges, more than a binary graph file supports (" + CsrGraph.MAX_EDGES + ")");
+		}
+
+		CRC32 checksum = new CRC32();
+		try (FileChannel channel = FileChannel.open(temporaryFile, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			SectionWriter writer = new SectionWriter(channel, checksum, HEADER_SIZE);
+			writer.writeLongs(graph.vertexIds(), numVertices);
+			writer.writeInts(graph.outOffsets(), numVertices + 1);
+			writer.writeInts(graph.outNeighbours(), numEdges);
+			if (graph.isWeighted()) {
+				writer.writeDoubles(graph.outWeights(), numEdges);
+			}
+			if (graph.isDirected()) {
+				writer.writeInts(graph.inOffsets(), numVertices + 1);
+				writer.writeInts(graph.inNeighbours(), numEdges);
+			}
+
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			header.putLong(MAGIC);
+			header.putInt(VERSION);
+			header.putInt((graph.isDirected() ? FLAG_DIRECTED : 0) | (graph.isWeighted() ? FLAG_WEIGHTED : 0));
+			header.putInt(numVertices);
+			header.putInt(0);
+			header.putLong(numEdges);
+			header.putLong(Files.size(Paths.get(vertexFilePath)));
+			header.putLong(Files.getLastModifiedTime(Paths.get(vertexFilePath)).toMillis());
+			header.putLong(Files.size(Paths.get(edgeFilePath)));
+			header.putLong(Files.getLastModifiedTime(Paths.get(edgeFilePath)).toMillis());
+			header.putLong(checksum.getValue());
+			header.putLong(headerChecksum(header));
+			header.clear();
+			while (header.hasRemaining()) {
+				channel.write(header, header.position());
+			}
+			channel.force(false);
+		}
+		Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Checks whether a binary file has a valid header that matches the given text files. Unlike
+	 * {@link #read(Path, String, String)}, this does not verify the checksum of the payload.
+	 */
+	public static boolean isUpToDate(Path file, String vertexFilePath, String edgeFilePath) throws IOException {
+		if (!Files.isRegularFile(file)) {
+			return false;
+		}
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			Header header = Header.read(channel);
+			return header != null && header.matches(vertexFilePath, edgeFilePath)
+					&& channel.size() == header.getFileSize();
+		}
+	}
+
+	/**
+	 * Reads a graph from a binary file if the file is intact and up to date with the given text files.
+	 *
+	 * @return the graph, or null if the file does not exist, is corrupt, or was created from different input files
+	 */
+	public static HeapCsrGraph read(Path file, String vertexFilePath, String edgeFilePath) throws IOException {
+		if (!Files.isRegularFile(file)) {
+			return null;
+		}
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			Header header = Header.read(channel);
+			if (header == null || !header.matches(vertexFilePath, edgeFilePath)
+					|| channel.size() != header.getFileSize()) {
+				return null;
+			}
+
+			int numVertices = header.numVertices;
+			int numEdges = (int) header.numEdges;
+			CRC32 checksum = new CRC32();
+			SectionReader reader = new SectionReader(channel, checksum, HEADER_SIZE);
+			long[] vertexIds = reader.readLongs(numVertices);
+			int[] outOffsets = reader.readInts(numVertices + 1);
+			int[] outNeighbours = reader.readInts(numEdges);
+			double[] outWeights = header.weighted ? reader.readDoubles(numEdges) : null;
+			int[] inOffsets = outOffsets;
+			int[] inNeighbours = outNeighbours;
+			if (header.directed) {
+				inOffsets = reader.readInts(numVertices + 1);
+				inNeighbours = reader.readInts(numEdges);
+			}
+			if (checksum.getValue() != header.payloadChecksum) {
+				return null;
+			}
+			return new HeapCsrGraph(vertexIds, header.directed, outOffsets, outNeighbours, outWeights, inOffsets,
+					inNeighbours);
+		}
+	}
+
+	/**
+	 * Maps a binary file into memory if it is up to date with the given text files. Only the header is validated;
+	 * verifying the payload checksum would require reading the whole file, defeating on-demand paging.
+	 *
+	 * @return the mapped graph, or null if the file does not exist, has an invalid header, or was created from
+	 * different input files
+	 */
+	public static MappedCsrGraph map(Path file, String vertexFilePath, String edgeFilePath) throws IOException {
+		if (!Files.isRegularFile(file)) {
+			return null;
+		}
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			Header header = Header.read(channel);
+			if (header == null || !header.matches(vertexFilePath, edgeFilePath)
+					|| channel.size() != header.getFileSize()) {
+				return null;
+			}
+			// Mappings remain valid after the channel is closed
+			return new MappedCsrGraph(channel, header);
+		}
+	}
+
+	private static long headerChecksum(ByteBuffer header) {
+		CRC32 checksum = new CRC32();
+		checksum.update(header.array(), 0, Header.CHECKSUM_OFFSET);
+		return checksum.getValue();
+	}
+
+	private static long align(long position) {
+		return (position + 7) & ~7L;
+	}
+
+	/**
+	 * Decoded and validated header of a binary graph file.
+	 */
+	static final class Header {
+
+		private static final int CHECKSUM_OFFSET = 72;
+
+		final boolean directed;
+		final boolean weighted;
+		final int numVertices;
+		final long numEdges;
+		final long vertexFileSize;
+		final long vertexFileModified;
+		final long edgeFileSize;
+		final long edgeFileModified;
+		final long payloadChecksum;
+
+		private Header(ByteBuffer buffer) {
+			int flags = buffer.getInt(12);
+			this.directed = (flags & FLAG_DIRECTED) != 0;
+			this.weighted = (flags & FLAG_WEIGHTED) != 0;
+			this.numVertices = buffer.getInt(16);
+			this.numEdges = buffer.getLong(24);
+			this.vertexFileSize = buffer.getLong(32);
+			this.vertexFileModified = buffer.getLong(40);
+			this.edgeFileSize = buffer.getLong(48);
+			this.edgeFileModified = buffer.getLong(56);
+			this.payloadChecksum = buffer.getLong(64);
+		}
+
+		/**
+		 * @return the header, or null if the channel does not start with a valid header
+		 */
+		static Header read(FileChannel channel) throws IOException {
+			ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			while (buffer.hasRemaining()) {
+				if (channel.read(buffer, buffer.position()) < 0) {
+					return null;
+				}
+			}
+			if (buffer.getLong(0) != MAGIC || buffer.getInt(8) != VERSION
+					|| buffer.getLong(CHECKSUM_OFFSET) != headerChecksum(buffer)) {
+				return null;
+			}
+			Header header = new Header(buffer);
+			if (header.numVertices < 0 || header.numEdges < 0 || header.numEdges > CsrGraph.MAX_EDGES) {
+				return null;
+			}
+			return header;
+		}
+
+		boolean matches(String vertexFilePath, String edgeFilePath) throws IOException {
+			Path vertexFile = Paths.get(vertexFilePath);
+			Path edgeFile = Paths.get(edgeFilePath);
+			return Files.size(vertexFile) == vertexFileSize
+					&& Files.getLastModifiedTime(vertexFile).toMillis() == vertexFileModified
+					&& Files.size(edgeFile) == edgeFileSize
+					&& Files.getLastModifiedTime(edgeFile).toMillis() == edgeFileModified;
+		}
+
+		long vertexIdsOffset() {
+			return HEADER_SIZE;
+		}
+
+		long outOffsetsOffset() {
+			return align(vertexIdsOffset() + 8L * numVertices);
+		}
+
+		long outNeighboursOffset() {
+			return align(outOffsetsOffset() + 4L * (numVertices + 1));
+		}
+
+		long outWeightsOffset() {
+			return align(outNeighboursOffset() + 4L * numEdges);
+		}
+
+		long inOffsetsOffset() {
+			return weighted ? align(outWeightsOffset() + 8L * numEdges) : outWeightsOffset();
+		}
+
+		long inNeighboursOffset() {
+			return align(inOffsetsOffset() + 4L * (numVertices + 1));
+		}
+
+		long getFileSize() {
+			return directed ? align(inNeighboursOffset() + 4L * numEdges) : inOffsetsOffset();
+		}
+	}
+
+	/**
+	 * Writes aligned sections of primitive values through a reusable buffer, updating the payload checksum.
+	 */
+	private static final class SectionWriter {
+
+		private final FileChannel channel;
+		private final CRC32 checksum;
+		private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		private long position;
+
+		SectionWriter(FileChannel channel, CRC32 checksum, long position) {
+			this.channel = channel;
+			this.checksum = checksum;
+			this.position = position;
+		}
+
+		void writeLongs(long[] values, long count) throws IOException {
+			for (int i = 0; i < count; ) {
+				int length = (int) Math.min(count - i, buffer.remaining() / 8);
+				buffer.asLongBuffer().put(values, i, length);
+				buffer.position(buffer.position() + 8 * length);
+				i += length;
+				flush();
+			}
+			pad();
+		}
+
+		void writeInts(int[] values, long count) throws IOException {
+			for (int i = 0; i < count; ) {
+				int length = (int) Math.min(count - i, buffer.remaining() / 4);
+				buffer.asIntBuffer().put(values, i, length);
+				buffer.position(buffer.position() + 4 * length);
+				i += length;
+				flush();
+			}
+			pad();
+		}
+
+		void writeDoubles(double[] values, long count) throws IOException {
+			for (int i = 0; i < count; ) {
+				int length = (int) Math.min(count - i, buffer.remaining() / 8);
+				buffer.asDoubleBuffer().put(values, i, length);
+				buffer.position(buffer.position() + 8 * length);
+				i += length;
+				flush();
+			}
+			pad();
+		}
+
+		private void pad() throws IOException {
+			long padding = align(position) - position;
+			if (padding > 0) {
+				buffer.put(new byte[(int) padding]);
+				flush();
+			}
+		}
+
+		private void flush() throws IOException {
+			buffer.flip();
+			checksum.update(buffer.array(), 0, buffer.limit());
+			while (buffer.hasRemaining()) {
+				position += channel.write(buffer, position);
+			}
+			buffer.clear();
+		}
+	}
+
+	/**
+	 * Reads aligned sections of primitive values through a reusable buffer, updating the payload checksum.
+	 */
+	private static final class SectionReader {
+
+		private final FileChannel channel;
+		private final CRC32 checksum;
+		private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		private long position;
+
+		SectionReader(FileChannel channel, CRC32 checksum, long position) {
+			this.channel = channel;
+			this.checksum = checksum;
+			this.position = position;
+		}
+
+		long[] readLongs(int count) throws IOException {
+			long[] values = new long[count];
+			for (int i = 0; i < count; ) {
+				int length = fill(8L * (count - i)) / 8;
+				buffer.asLongBuffer().get(values, i, length);
+				i += length;
+			}
+			skipPadding();
+			return values;
+		}
+
+		int[] readInts(int count) throws IOException {
+			int[] values = new int[count];
+			for (int i = 0; i < count; ) {
+				int length = fill(4L * (count - i)) / 4;
+				buffer.asIntBuffer().get(values, i, length);
+				i += length;
+			}
+			skipPadding();
+			return values;
+		}
+
+		double[] readDoubles(int count) throws IOException {
+			double[] values = new double[count];
+			for (int i = 0; i < count; ) {
+				int length = fill(8L * (count - i)) / 8;
+				buffer.asDoubleBuffer().get(values, i, length);
+				i += length;
+			}
+			skipPadding();
+			return values;
+		}
+
+		private void skipPadding() throws IOException {
+			long padding = align(position) - position;
+			if (padding > 0) {
+				fill(padding);
+			}
+		}
+
+		/**
+		 * Reads up to the given number of bytes (rounded down to a multiple of eight when more than fits in the
+		 * buffer) into the buffer and returns the number of bytes read.
+		 */
+		private int fill(long bytes) throws IOException {
+			buffer.clear();
+			buffer.limit((int) Math.min(bytes, BUFFER_SIZE));
+			while (buffer.hasRemaining()) {
+				int read = channel.read(buffer, position);
+				if (read < 0) {
+					throw new IOException("Unexpected end of binary graph file");
+				}
+				position += read;
+			}
+			buffer.flip();
+			checksum.update(buffer.array(), 0, buffer.limit());
+			return buffer.limit();
+		}
+	}
+}
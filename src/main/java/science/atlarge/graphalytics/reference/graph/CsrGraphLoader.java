@@ -0,0 +1,198 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.graph;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import science.atlarge.graphalytics.reference.util.Parallel;
+
+/**
+ * Loads a graph in EVLP format (a vertex file and an edge file) directly into a {@link CsrGraph}, without
+ * materializing a PropertyGraph. Both files are split into byte ranges that are parsed in parallel.
+ */
+public final class CsrGraphLoader {
+
+	/**
+	 * Size of the byte ranges that files are split into for parsing.
+	 */
+	private static final long CHUNK_SIZE = 8L << 20;
+
+	private CsrGraphLoader() {
+	}
+
+	/**
+	 * @param vertexFilePath path of the vertex file, with one vertex identifier per line
+	 * @param edgeFilePath   path of the edge file, with one "source destination [weight]" triple per line
+	 * @param directed       true iff the graph is directed
+	 * @param weighted       true iff the edge file contains a weight for every edge
+	 */
+	public static HeapCsrGraph load(String vertexFilePath, String edgeFilePath, boolean directed, boolean weighted)
+			throws IOException {
+		return load(vertexFilePath, edgeFilePath, directed, weighted, CHUNK_SIZE);
+	}
+
+	/**
+	 * Variant of {@link #load(String, String, boolean, boolean)} with a custom byte range size, so that tests can
+	 * place range boundaries within small files.
+	 */
+	static HeapCsrGraph load(String vertexFilePath, String edgeFilePath, boolean directed, final boolean weighted,
+			long chunkSize) throws IOException {
+		long[] vertexIds = loadVertices(Paths.get(vertexFilePath), chunkSize);
+		final VertexIdMap vertexIdMap = VertexIdMap.fromSortedIds(vertexIds);
+
+		List<CsrGraphBuilder.EdgeBlock> edges = parseChunks(Paths.get(edgeFilePath), chunkSize,
+				new ChunkParser<CsrGraphBuilder.EdgeBlock>() {
+			@Override
+			public CsrGraphBuilder.EdgeBlock parse(ByteRangeReader reader) throws IOException {
+				CsrGraphBuilder.EdgeBlock block = new CsrGraphBuilder.EdgeBlock();
+				while (reader.nextLine()) {
+					int source = indexOf(vertexIdMap, reader.parseLong());
+					int destination = indexOf(vertexIdMap, reader.parseLong());
+					if (weighted) {
+						block.add(source, destination, reader.parseDouble());
+					} else {
+						block.add(source, destination);
+					}
+				}
+				return block;
+			}
+		});
+
+		return new CsrGraphBuilder(vertexIds, directed, !directed, weighted).build(edges);
+	}
+
+	/**
+	 * Reads all vertex identifiers and returns them in ascending order.
+	 */
+	private static long[] loadVertices(Path vertexFile, long chunkSize) throws IOException {
+		final List<LongArrayList> chunks = parseChunks(vertexFile, chunkSize, new ChunkParser<LongArrayList>() {
+			@Override
+			public LongArrayList parse(ByteRangeReader reader) throws IOException {
+				LongArrayList vertexIds = new LongArrayList();
+				while (reader.nextLine()) {
+					vertexIds.add(reader.parseLong());
+				}
+				return vertexIds;
+			}
+		});
+
+		// Concatenate the chunks and verify that the identifiers are sorted, which is the common case
+		final int[] chunkOffsets = new int[chunks.size() + 1];
+		for (int i = 0; i < chunks.size(); i++) {
+			chunkOffsets[i + 1] = chunkOffsets[i] + chunks.get(i).size();
+		}
+		final long[] vertexIds = new long[chunkOffsets[chunks.size()]];
+		final boolean[] chunkSorted = new boolean[chunks.size()];
+		Parallel.forEach(chunks.size(), new Parallel.IndexTask() {
+			@Override
+			public void run(int index) {
+				LongArrayList chunk = chunks.get(index);
+				chunk.getElements(0, vertexIds, chunkOffsets[index], chunk.size());
+				boolean sorted = true;
+				for (int i = chunkOffsets[index] + 1; i < chunkOffsets[index + 1]; i++) {
+					sorted = sorted && vertexIds[i - 1] < vertexIds[i];
+				}
+				chunkSorted[index] = sorted;
+			}
+		});
+
+		boolean sorted = true;
+		for (int i = 0; i < chunks.size(); i++) {
+			sorted = sorted && chunkSorted[i];
+			if (i > 0 && chunkOffsets[i] > 0 && chunkOffsets[i] < vertexIds.length) {
+				sorted = sorted && vertexIds[chunkOffsets[i] - 1] < vertexIds[chunkOffsets[i]];
+			}
+		}
+		if (!sorted) {
+			Arrays.sort(vertexIds);
+			for (int i = 1; i < vertexIds.length; i++) {
+				if (vertexIds[i - 1] == vertexIds[i]) {
+					throw new IOException("Duplicate vertex identifier: " + vertexIds[i]);
+				}
+			}
+		}
+		return vertexIds;
+	}
+
+	private static int indexOf(VertexIdMap vertexIdMap, long vertexId) throws IOException {
+		int index = vertexIdMap.getIndex(vertexId);
+		if (index < 0) {
+			throw new IOException("Edge refers to unknown vertex: " + vertexId);
+		}
+		return index;
+	}
+
+	/**
+	 * Parses the lines within one byte range of a file.
+	 */
+	private interface ChunkParser<T> {
+		T parse(ByteRangeReader reader) throws IOException;
+	}
+
+	/**
+	 * Splits a file into ranges of chunkSize bytes and parses all ranges in parallel.
+	 *
+	 * @return the results of the parser for every range, in file order
+	 */
+	private static <T> List<T> parseChunks(Path file, final long chunkSize, final ChunkParser<T> parser)
+			throws IOException {
+		try (final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			final long size = channel.size();
+			final int numChunks = (int) Math.max(1, (size + chunkSize - 1) / chunkSize);
+			final List<T> results = new ArrayList<>(numChunks);
+			for (int i = 0; i < numChunks; i++) {
+				results.add(null);
+			}
+
+			try {
+				Parallel.forEach(numChunks, new Parallel.IndexTask() {
+					@Override
+					public void run(int index) {
+						long start = index * chunkSize;
+						long end = Math.min(size, start + chunkSize);
+						try {
+							results.set(index, parser.parse(new ByteRangeReader(channel, start, end)));
+						} catch (IOException e) {
+							throw new ChunkParseException(e);
+						}
+					}
+				});
+			} catch (ChunkParseException e) {
+				// The fork-join framework may rethrow a copy of the exception that wraps the original one
+				Throwable cause = e;
+				while (cause instanceof ChunkParseException) {
+					cause = cause.getCause();
+				}
+				throw new IOException("Failed to parse " + file, cause);
+			}
+			return results;
+		}
+	}
+
+	private static final class ChunkParseException extends RuntimeException {
+		ChunkParseException(IOException cause) {
+			super(cause);
+		}
+	}
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.graph;
+
+import it.unimi.dsi.fastutil.longs.AbstractLong2DoubleMap;
+import it.unimi.dsi.fastutil.longs.Long2DoubleMap;
+import it.unimi.dsi.fastutil.objects.ObjectSet;
+
+/**
+ * Floating-point value for every vertex of a graph.
+ */
+public final class DoubleVertexValues extends VertexValues {
+
+	private final double[] values;
+
+	/**
+	 * @param graph  the graph the values belong to
+	 * @param values the value of every vertex, indexed by vertex index; the array is not copied
+	 */
+	public DoubleVertexValues(CsrGraph graph, double[] values) {
+		super(graph, values.length);
+		this.values = values;
+	}
+
+	/**
+	 * @return the value of the vertex with the given index
+	 */
+	public double get(int index) {
+		return values[index];
+	}
+
+	@Override
+	public Long2DoubleMap asMap() {
+		return new MapView();
+	}
+
+	private final class MapView extends AbstractLong2DoubleMap {
+
+		@Override
+		public double get(long vertexId) {
+			int index = getIndex(vertexId);
+			return index >= 0 ? values[index] : defRetValue;
+		}
+
+		@Override
+		public boolean containsKey(long vertexId) {
+			return getIndex(vertexId) >= 0;
+		}
+
+		@Override
+		public int size() {
+			return values.length;
+		}
+
+		@Override
+		public ObjectSet<Long2DoubleMap.Entry> long2DoubleEntrySet() {
+			return new EntrySet<Long2DoubleMap.Entry>() {
+				@Override
+				Long2DoubleMap.Entry entry(int index) {
+					return new BasicEntry(getVertexId(index), values[index]);
+				}
+			};
+		}
+	}
+}
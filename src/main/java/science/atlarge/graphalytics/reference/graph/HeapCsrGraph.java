@@ -0,0 +1,150 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.graph;
+
+/**
+ * CSR graph backed by primitive arrays on the heap. The neighbours of vertex v are stored in the range
+ * [offsets[v], offsets[v + 1]) of the neighbour array. Undirected graphs share a single set of arrays for outgoing
+ * and incoming edges.
+ */
+public final class HeapCsrGraph extends CsrGraph {
+
+	private final long[] vertexIds;
+	private final VertexIdMap vertexIdMap;
+	private final boolean directed;
+
+	private final int[] outOffsets;
+	private final int[] outNeighbours;
+	private final double[] outWeights;
+
+	private final int[] inOffsets;
+	private final int[] inNeighbours;
+
+	HeapCsrGraph(long[] vertexIds, boolean directed, int[] outOffsets, int[] outNeighbours, double[] outWeights,
+			int[] inOffsets, int[] inNeighbours) {
+		this.vertexIds = vertexIds;
+		this.vertexIdMap = VertexIdMap.fromSortedIds(vertexIds);
+		this.directed = directed;
+		this.outOffsets = outOffsets;
+		this.outNeighbours = outNeighbours;
+		this.outWeights = outWeights;
+		this.inOffsets = inOffsets;
+		this.inNeighbours = inNeighbours;
+	}
+
+	@Override
+	public int getNumberOfVertices() {
+		return vertexIds.length;
+	}
+
+	@Override
+	public long getNumberOfEdges() {
+		return outNeighbours.length;
+	}
+
+	@Override
+	public boolean isDirected() {
+		return directed;
+	}
+
+	@Override
+	public boolean isWeighted() {
+		return outWeights != null;
+	}
+
+	@Override
+	public long getVertexId(int vertex) {
+		return vertexIdMap.getId(vertex);
+	}
+
+	@Override
+	public int getVertexIndex(long vertexId) {
+		return vertexIdMap.getIndex(vertexId);
+	}
+
+	public VertexIdMap getVertexIdMap() {
+		return vertexIdMap;
+	}
+
+	@Override
+	public int getOutDegree(int vertex) {
+		return outOffsets[vertex + 1] - outOffsets[vertex];
+	}
+
+	@Override
+	public int getOutEdgesBegin(int vertex) {
+		return outOffsets[vertex];
+	}
+
+	@Override
+	public int getOutEdgesEnd(int vertex) {
+		return outOffsets[vertex + 1];
+	}
+
+	@Override
+	public int getOutNeighbour(int edge) {
+		return outNeighbours[edge];
+	}
+
+	@Override
+	public double getOutWeight(int edge) {
+		return outWeights[edge];
+	}
+
+	@Override
+	public int getInDegree(int vertex) {
+		return inOffsets[vertex + 1] - inOffsets[vertex];
+	}
+
+	@Override
+	public int getInEdgesBegin(int vertex) {
+		return inOffsets[vertex];
+	}
+
+	@Override
+	public int getInEdgesEnd(int vertex) {
+		return inOffsets[vertex + 1];
+	}
+
+	@Override
+	public int getInNeighbour(int edge) {
+		return inNeighbours[edge];
+	}
+
+	long[] vertexIds() {
+		return vertexIds;
+	}
+
+	int[] outOffsets() {
+		return outOffsets;
+	}
+
+	int[] outNeighbours() {
+		return outNeighbours;
+	}
+
+	double[] outWeights() {
+		return outWeights;
+	}
+
+	int[] inOffsets() {
+		return inOffsets;
+	}
+
+	int[] inNeighbours() {
+		return inNeighbours;
+	}
+}
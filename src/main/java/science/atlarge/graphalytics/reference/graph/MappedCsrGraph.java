@@ -0,0 +1,179 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.graph;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * CSR graph backed by a memory-mapped binary graph file (see {@link CsrGraphFile}). The CSR arrays live outside the
+ * Java heap and are paged in by the operating system on demand, so graphs larger than the heap can be processed.
+ *
+ * <p>A single mapping is limited to 2 GB, so the file is mapped as a sequence of fixed-size segments. All sections
+ * of the file are aligned to eight bytes and the segment size is a multiple of eight, so no value spans two
+ * segments. File positions are longs, but edge indices are ints like in every {@link CsrGraph}, so a graph file
+ * holds at most {@link CsrGraph#MAX_EDGES} stored edges.
+ */
+public final class MappedCsrGraph extends CsrGraph {
+
+	private static final int SEGMENT_SHIFT = 30;
+
+	private final MappedByteBuffer[] segments;
+	private final int segmentShift;
+	private final long segmentMask;
+
+	private final int numVertices;
+	private final long numEdges;
+	private final boolean directed;
+	private final boolean weighted;
+
+	private final long vertexIdsOffset;
+	private final long outOffsetsOffset;
+	private final long outNeighboursOffset;
+	private final long outWeightsOffset;
+	private final long inOffsetsOffset;
+	private final long inNeighboursOffset;
+
+	private final VertexIdMap denseVertexIds;
+
+	MappedCsrGraph(FileChannel channel, CsrGraphFile.Header header) throws IOException {
+		this(channel, header, SEGMENT_SHIFT);
+	}
+
+	/**
+	 * @param segmentShift base-two logarithm of the segment size, at least 3 (eight bytes) and at most the default;
+	 *                     smaller segments are only useful to test values near segment boundaries
+	 */
+	MappedCsrGraph(FileChannel channel, CsrGraphFile.Header header, int segmentShift) throws IOException {
+		if (segmentShift < 3 || segmentShift > SEGMENT_SHIFT) {
+			throw new IllegalArgumentException("Invalid segment shift: " + segmentShift);
+		}
+		this.segmentShift = segmentShift;
+		long segmentSize = 1L << segmentShift;
+		segmentMask = segmentSize - 1;
+
+		long size = channel.size();
+		segments = new MappedByteBuffer[(int) ((size + segmentMask) >>> segmentShift)];
+		for (int i = 0; i < segments.length; i++) {
+			long start = (long) i << segmentShift;
+			segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(segmentSize, size - start));
+			segments[i].order(ByteOrder.LITTLE_ENDIAN);
+		}
+
+		numVertices = header.numVertices;
+		numEdges = header.numEdges;
+		directed = header.directed;
+		weighted = header.weighted;
+
+		vertexIdsOffset = header.vertexIdsOffset();
+		outOffsetsOffset = header.outOffsetsOffset();
+		outNeighboursOffset = header.outNeighboursOffset();
+		outWeightsOffset = header.outWeightsOffset();
+		inOffsetsOffset = directed ? header.inOffsetsOffset() : outOffsetsOffset;
+		inNeighboursOffset = directed ? header.inNeighboursOffset() : outNeighboursOffset;
+
+		// Identifiers are sorted and unique, so they are contiguous iff the first and last differ by n - 1
+		long firstId = numVertices > 0 ? getLong(vertexIdsOffset) : 0;
+		boolean dense = numVertices == 0
+				|| getLong(vertexIdsOffset + 8L * (numVertices - 1)) - firstId == numVertices - 1;
+		denseVertexIds = dense ? VertexIdMap.fromRange(firstId, numVertices) : null;
+	}
+
+	@Override
+	public int getNumberOfVertices() {
+		return numVertices;
+	}
+
+	@Override
+	public long getNumberOfEdges() {
+		return numEdges;
+	}
+
+	@Override
+	public boolean isDirected() {
+		return directed;
+	}
+
+	@Override
+	public boolean isWeighted() {
+		return weighted;
+	}
+
+	@Override
+	public long getVertexId(int vertex) {
+		if (denseVertexIds != null) {
+			return denseVertexIds.getId(vertex);
+		}
+		return getLong(vertexIdsOffset + 8L * vertex);
+	}
+
+	@Override
+	public int getVertexIndex(long vertexId) {
+		if (denseVertexIds != null) {
+			return denseVertexIds.getIndex(vertexId);
+		}
+		return super.getVertexIndex(vertexId);
+	}
+
+	@Override
+	public int getOutEdgesBegin(int vertex) {
+		return getInt(outOffsetsOffset + 4L * vertex);
+	}
+
+	@Override
+	public int getOutEdgesEnd(int vertex) {
+		return getInt(outOffsetsOffset + 4L * (vertex + 1));
+	}
+
+	@Override
+	public int getOutNeighbour(int edge) {
+		return getInt(outNeighboursOffset + 4L * edge);
+	}
+
+	@Override
+	public double getOutWeight(int edge) {
+		return getDouble(outWeightsOffset + 8L * edge);
+	}
+
+	@Override
+	public int getInEdgesBegin(int vertex) {
+		return getInt(inOffsetsOffset + 4L * vertex);
+	}
+
+	@Override
+	public int getInEdgesEnd(int vertex) {
+		return getInt(inOffsetsOffset + 4L * (vertex + 1));
+	}
+
+	@Override
+	public int getInNeighbour(int edge) {
+		return getInt(inNeighboursOffset + 4L * edge);
+	}
+
+	private int getInt(long position) {
+		return segments[(int) (position >>> segmentShift)].getInt((int) (position & segmentMask));
+	}
+
+	private long getLong(long position) {
+		return segments[(int) (position >>> segmentShift)].getLong((int) (position & segmentMask));
+	}
+
+	private double getDouble(long position) {
+		return segments[(int) (position >>> segmentShift)].getDouble((int) (position & segmentMask));
+	}
+}
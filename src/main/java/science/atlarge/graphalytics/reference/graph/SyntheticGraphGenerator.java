@@ -0,0 +1,386 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.graph;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import science.atlarge.graphalytics.reference.util.Parallel;
+
+/**
+ * Generates random graphs for testing and benchmarking at scales beyond the validation datasets, either in memory
+ * or as a vertex file and an edge file in EVLP format. Vertices have the identifiers 0 to n - 1. Self-loops and
+ * parallel edges are removed, so a graph can have slightly fewer edges than were sampled. The edge file lists every
+ * undirected edge once, from the lower to the higher identifier, and is sorted by source and destination.
+ *
+ * <p>Edges are sampled in parallel in chunks of a fixed size, each with its own random number generator derived from
+ * the seed, and the weight of an edge is derived from the seed and its position in the sorted edge list. A seed
+ * therefore always produces the same graph, independent of the number of threads.
+ */
+public final class SyntheticGraphGenerator {
+
+	public enum Topology {
+		/**
+		 * R-MAT (Chakrabarti et al., "R-MAT: A Recursive Model for Graph Mining", SDM 2004) with the initiator
+		 * probabilities of the Graph500 Kronecker generator. Vertex identifiers are randomly permuted, so that the
+		 * high-degree vertices are not clustered at low identifiers.
+		 */
+		RMAT,
+		/**
+		 * Edges between uniformly random vertices, i.e. an Erdos-Renyi graph with a fixed number of sampled edges.
+		 */
+		UNIFORM,
+		/**
+		 * Two-dimensional grid, filled row by row, with an edge from every vertex to its right and lower neighbour.
+		 * The average degree is ignored.
+		 */
+		GRID
+	}
+
+	/**
+	 * Number of edges sampled by one task, or number of grid vertices connected by one task.
+	 */
+	private static final int CHUNK_SIZE = 1 << 16;
+	private static final int GRAIN_SIZE = 1024;
+	private static final double RMAT_A = 0.57;
+	private static final double RMAT_B = 0.19;
+	private static final double RMAT_C = 0.19;
+	/**
+	 * Weights are multiples of 1 / WEIGHT_RESOLUTION in (0, 1], which are printed without exponent.
+	 */
+	private static final int WEIGHT_RESOLUTION = 1000;
+	private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+	private final Topology topology;
+	private final int numVertices;
+	private final boolean directed;
+	private final boolean weighted;
+	private final long seed;
+	private final long numSamples;
+
+	/**
+	 * @param topology      the shape of the graph
+	 * @param numVertices   the number of vertices
+	 * @param averageDegree the number of edges sampled per vertex, counting both endpoints of an undirected edge
+	 * @param directed      true iff the graph is directed
+	 * @param weighted      true iff every edge has a random weight in (0, 1]
+	 * @param seed          the seed from which all random choices are derived
+	 */
+	public SyntheticGraphGenerator(Topology topology, int numVertices, int averageDegree, boolean directed,
+			boolean weighted, long seed) {
+		if (numVertices < 1) {
+			throw new IllegalArgumentException("Invalid number of vertices: " + numVertices);
+		}
+		if (averageDegree < 0) {
+			throw new IllegalArgumentException("Invalid average degree: " + averageDegree);
+		}
+		this.topology = topology;
+		this.numVertices = numVertices;
+		this.directed = directed;
+		this.weighted = weighted;
+		this.seed = seed;
+		this.numSamples = topology == Topology.GRID ? 2L * numVertices
+				: (long) numVertices * averageDegree / (directed ? 1 : 2);
+		if (numSamples > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Graph has too many edges for CSR format: " + numSamples);
+		}
+	}
+
+	/**
+	 * @return the graph in memory, equal to the graph loaded from the files written by {@link #write(Path, Path)}
+	 */
+	public HeapCsrGraph generate() {
+		final EdgeList edges = generateEdges();
+		long[] vertexIds = new long[numVertices];
+		for (int v = 0; v < numVertices; v++) {
+			vertexIds[v] = v;
+		}
+
+		final int numBlocks = (numVertices + GRAIN_SIZE - 1) / GRAIN_SIZE;
+		final CsrGraphBuilder.EdgeBlock[] blocks = new CsrGraphBuilder.EdgeBlock[numBlocks];
+		Parallel.forEach(numBlocks, new Parallel.IndexTask() {
+			@Override
+			public void run(int index) {
+				CsrGraphBuilder.EdgeBlock block = new CsrGraphBuilder.EdgeBlock();
+				for (int v = index * GRAIN_SIZE, end = Math.min(v + GRAIN_SIZE, numVertices); v < end; v++) {
+					for (int e = edges.offsets[v]; e < edges.offsets[v + 1]; e++) {
+						if (weighted) {
+							block.add(v, edges.targets[e], edges.getWeight(e));
+						} else {
+							block.add(v, edges.targets[e]);
+						}
+					}
+				}
+				blocks[index] = block;
+			}
+		});
+		return new CsrGraphBuilder(vertexIds, directed, !directed, weighted).build(Arrays.asList(blocks));
+	}
+
+	/**
+	 * Writes the graph to a vertex file and an edge file. Both are formatted in parallel in batches of ranges, which
+	 * are appended to the files in order.
+	 */
+	public void write(Path vertexFile, Path edgeFile) throws IOException {
+		writeLines(vertexFile, numVertices, CHUNK_SIZE, new LineFormatter() {
+			@Override
+			public void format(int from, int to, StringBuilder lines) {
+				for (int v = from; v < to; v++) {
+					lines.append(v).append('\n');
+				}
+			}
+		});
+
+		final EdgeList edges = generateEdges();
+		int verticesPerRange = (int) Math.max(1, (long) CHUNK_SIZE * numVertices / Math.max(1, edges.targets.length));
+		writeLines(edgeFile, numVertices, verticesPerRange, new LineFormatter() {
+			@Override
+			public void format(int from, int to, StringBuilder lines) {
+				for (int v = from; v < to; v++) {
+					for (int e = edges.offsets[v]; e < edges.offsets[v + 1]; e++) {
+						lines.append(v).append(' ').append(edges.targets[e]);
+						if (weighted) {
+							lines.append(' ').append(edges.getWeight(e));
+						}
+						lines.append('\n');
+					}
+				}
+			}
+		});
+	}
+
+	/**
+	 * Samples all edges and collects them by source, sorted by destination and without duplicates.
+	 */
+	private EdgeList generateEdges() {
+		final int[] permutation = topology == Topology.RMAT ? randomPermutation() : null;
+		final int numChunks = (int) ((numSamples + CHUNK_SIZE - 1) / CHUNK_SIZE);
+		final CsrGraphBuilder.EdgeBlock[] blocks = new CsrGraphBuilder.EdgeBlock[numChunks];
+		Parallel.forEach(numChunks, new Parallel.IndexTask() {
+			@Override
+			public void run(int chunk) {
+				CsrGraphBuilder.EdgeBlock block = new CsrGraphBuilder.EdgeBlock();
+				Random random = new Random(mix(seed + (chunk + 1) * GOLDEN_GAMMA));
+				int size = (int) Math.min(CHUNK_SIZE, numSamples - (long) chunk * CHUNK_SIZE);
+				if (topology == Topology.GRID) {
+					connectGrid(chunk * (CHUNK_SIZE / 2), size / 2, block);
+				} else if (topology == Topology.RMAT) {
+					for (int i = 0; i < size; i++) {
+						long edge = sampleRmat(random);
+						addEdge(block, permutation[(int) (edge >>> 32)], permutation[(int) edge]);
+					}
+				} else {
+					for (int i = 0; i < size; i++) {
+						addEdge(block, random.nextInt(numVertices), random.nextInt(numVertices));
+					}
+				}
+				blocks[chunk] = block;
+			}
+		});
+
+		// Bucket the destinations by source
+		final AtomicIntegerArray counts = new AtomicIntegerArray(numVertices);
+		Parallel.forEach(numChunks, new Parallel.IndexTask() {
+			@Override
+			public void run(int chunk) {
+				int[] sources = blocks[chunk].sources.elements();
+				for (int e = 0, size = blocks[chunk].size(); e < size; e++) {
+					counts.incrementAndGet(sources[e]);
+				}
+			}
+		});
+		final int[] offsets = CsrGraphBuilder.prefixSum(counts);
+		final int[] destinations = new int[offsets[numVertices]];
+		final AtomicIntegerArray positions = CsrGraphBuilder.toAtomic(offsets);
+		Parallel.forEach(numChunks, new Parallel.IndexTask() {
+			@Override
+			public void run(int chunk) {
+				int[] sources = blocks[chunk].sources.elements();
+				int[] targets = blocks[chunk].destinations.elements();
+				for (int e = 0, size = blocks[chunk].size(); e < size; e++) {
+					destinations[positions.getAndIncrement(sources[e])] = targets[e];
+				}
+				blocks[chunk] = null;
+			}
+		});
+
+		// Sort the destinations of every source, remove duplicates and compact the result
+		final AtomicIntegerArray uniqueCounts = new AtomicIntegerArray(numVertices);
+		Parallel.forRange(0, numVertices, GRAIN_SIZE, new Parallel.RangeTask() {
+			@Override
+			public void run(int from, int to) {
+				for (int v = from; v < to; v++) {
+					int begin = offsets[v];
+					int end = offsets[v + 1];
+					Arrays.sort(destinations, begin, end);
+					int unique = begin;
+					for (int e = begin; e < end; e++) {
+						if (unique == begin || destinations[unique - 1] != destinations[e]) {
+							destinations[unique++] = destinations[e];
+						}
+					}
+					uniqueCounts.set(v, unique - begin);
+				}
+			}
+		});
+		final int[] uniqueOffsets = CsrGraphBuilder.prefixSum(uniqueCounts);
+		final int[] targets = new int[uniqueOffsets[numVertices]];
+		Parallel.forRange(0, numVertices, GRAIN_SIZE, new Parallel.RangeTask() {
+			@Override
+			public void run(int from, int to) {
+				for (int v = from; v < to; v++) {
+					System.arraycopy(destinations, offsets[v], targets, uniqueOffsets[v], uniqueCounts.get(v));
+				}
+			}
+		});
+		return new EdgeList(uniqueOffsets, targets, mix(seed ^ GOLDEN_GAMMA));
+	}
+
+	/**
+	 * Adds the edges to the right and lower neighbours of a range of vertices of a square grid.
+	 */
+	private void connectGrid(int from, int count, CsrGraphBuilder.EdgeBlock block) {
+		int width = (int) Math.ceil(Math.sqrt(numVertices));
+		for (int v = from, end = Math.min(from + count, numVertices); v < end; v++) {
+			if ((v + 1) % width != 0 && v + 1 < numVertices) {
+				block.add(v, v + 1);
+			}
+			if (v + width < numVertices) {
+				block.add(v, v + width);
+			}
+		}
+	}
+
+	/**
+	 * Chooses a quadrant of the adjacency matrix for every bit of the vertex indices, resampling edges that fall
+	 * outside the matrix if the number of vertices is not a power of two.
+	 *
+	 * @return the source in the upper and the destination in the lower 32 bits
+	 */
+	private long sampleRmat(Random random) {
+		int scale = 32 - Integer.numberOfLeadingZeros(numVertices - 1);
+		while (true) {
+			int source = 0;
+			int destination = 0;
+			for (int bit = 0; bit < scale; bit++) {
+				double p = random.nextDouble();
+				if (p >= RMAT_A + RMAT_B) {
+					source |= 1 << bit;
+				}
+				if ((p >= RMAT_A && p < RMAT_A + RMAT_B) || p >= RMAT_A + RMAT_B + RMAT_C) {
+					destination |= 1 << bit;
+				}
+			}
+			if (source < numVertices && destination < numVertices) {
+				return (long) source << 32 | destination;
+			}
+		}
+	}
+
+	private void addEdge(CsrGraphBuilder.EdgeBlock block, int source, int destination) {
+		if (source == destination) {
+			return;
+		}
+		if (!directed && source > destination) {
+			block.add(destination, source);
+		} else {
+			block.add(source, destination);
+		}
+	}
+
+	private int[] randomPermutation() {
+		int[] permutation = new int[numVertices];
+		for (int v = 0; v < numVertices; v++) {
+			permutation[v] = v;
+		}
+		Random random = new Random(mix(seed));
+		for (int v = numVertices - 1; v > 0; v--) {
+			int other = random.nextInt(v + 1);
+			int swap = permutation[v];
+			permutation[v] = permutation[other];
+			permutation[other] = swap;
+		}
+		return permutation;
+	}
+
+	/**
+	 * Finalizer of the SplitMix64 generator, which maps consecutive inputs to uncorrelated outputs.
+	 */
+	private static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	/**
+	 * Formats the lines of a range of vertices.
+	 */
+	private interface LineFormatter {
+		void format(int from, int to, StringBuilder lines);
+	}
+
+	private static void writeLines(Path file, final int numVertices, final int verticesPerRange,
+			final LineFormatter formatter) throws IOException {
+		final int numRanges = (int) (((long) numVertices + verticesPerRange - 1) / verticesPerRange);
+		final byte[][] batch = new byte[Parallel.getParallelism()][];
+		try (OutputStream out = Files.newOutputStream(file)) {
+			for (int first = 0; first < numRanges; first += batch.length) {
+				final int firstRange = first;
+				int batchSize = Math.min(batch.length, numRanges - first);
+				Parallel.forEach(batchSize, new Parallel.IndexTask() {
+					@Override
+					public void run(int index) {
+						int from = (firstRange + index) * verticesPerRange;
+						StringBuilder lines = new StringBuilder();
+						formatter.format(from, Math.min(from + verticesPerRange, numVertices), lines);
+						batch[index] = lines.toString().getBytes(StandardCharsets.US_ASCII);
+					}
+				});
+				for (int i = 0; i < batchSize; i++) {
+					out.write(batch[i]);
+					batch[i] = null;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Edges grouped by source, with the destinations of every source in ascending order.
+	 */
+	private static final class EdgeList {
+
+		final int[] offsets;
+		final int[] targets;
+		private final long weightSeed;
+
+		EdgeList(int[] offsets, int[] targets, long weightSeed) {
+			this.offsets = offsets;
+			this.targets = targets;
+			this.weightSeed = weightSeed;
+		}
+
+		double getWeight(int edge) {
+			long bits = mix(weightSeed + (edge + 1L) * GOLDEN_GAMMA) >>> 1;
+			return (1 + bits % WEIGHT_RESOLUTION) / (double) WEIGHT_RESOLUTION;
+		}
+	}
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.graph;
+
+import java.util.Arrays;
+
+/**
+ * Dictionary between the original vertex identifiers of a graph and the dense indices in [0, n) used internally.
+ * Indices are assigned in ascending order of the identifiers. If the identifiers form a contiguous range, which is
+ * common for generated and preprocessed graphs, both directions are computed with a single addition instead of a
+ * binary search.
+ */
+public final class VertexIdMap {
+
+	private final long[] vertexIds;
+	private final int size;
+	private final long firstId;
+	private final boolean dense;
+
+	private VertexIdMap(long[] vertexIds, int size, long firstId, boolean dense) {
+		this.vertexIds = vertexIds;
+		this.size = size;
+		this.firstId = firstId;
+		this.dense = dense;
+	}
+
+	/**
+	 * @param vertexIds original vertex identifiers, sorted in ascending order and without duplicates
+	 */
+	public static VertexIdMap fromSortedIds(long[] vertexIds) {
+		int size = vertexIds.length;
+		long firstId = size > 0 ? vertexIds[0] : 0;
+		boolean dense = size == 0 || vertexIds[size - 1] - firstId == size - 1;
+		return new VertexIdMap(vertexIds, size, firstId, dense);
+	}
+
+	/**
+	 * Creates a dictionary for the contiguous identifiers firstId, firstId + 1, ..., firstId + size - 1.
+	 */
+	public static VertexIdMap fromRange(long firstId, int size) {
+		return new VertexIdMap(null, size, firstId, true);
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return true if the vertex identifiers are contiguous
+	 */
+	public boolean isDense() {
+		return dense;
+	}
+
+	public long getId(int index) {
+		return dense ? firstId + index : vertexIds[index];
+	}
+
+	/**
+	 * @return the index of the given vertex identifier, or -1 if there is no vertex with this identifier
+	 */
+	public int getIndex(long vertexId) {
+		if (dense) {
+			long index = vertexId - firstId;
+			return index >= 0 && index < size ? (int) index : -1;
+		}
+		int index = Arrays.binarySearch(vertexIds, vertexId);
+		return index >= 0 ? index : -1;
+	}
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.graph;
+
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import it.unimi.dsi.fastutil.objects.AbstractObjectIterator;
+import it.unimi.dsi.fastutil.objects.AbstractObjectSet;
+import it.unimi.dsi.fastutil.objects.ObjectIterator;
+
+/**
+ * Result of an algorithm with one value per vertex of a graph. Values are stored in a primitive array indexed by the
+ * dense vertex index, and the graph serves as the dictionary to the original vertex identifiers. Results can be
+ * iterated by index without boxing, or viewed as a map from vertex identifiers to values.
+ */
+public abstract class VertexValues {
+
+	private final CsrGraph graph;
+
+	/**
+	 * @param graph     the graph the values belong to
+	 * @param numValues the length of the array holding the values, which must match the number of vertices
+	 */
+	VertexValues(CsrGraph graph, int numValues) {
+		if (numValues != graph.getNumberOfVertices()) {
+			throw new IllegalArgumentException("Expected " + graph.getNumberOfVertices() + " values, got "
+					+ numValues);
+		}
+		this.graph = graph;
+	}
+
+	/**
+	 * @return the number of vertices, i.e. the number of values
+	 */
+	public int size() {
+		return graph.getNumberOfVertices();
+	}
+
+	/**
+	 * @return the original identifier of the vertex with the given index
+	 */
+	public long getVertexId(int index) {
+		return graph.getVertexId(index);
+	}
+
+	/**
+	 * @return the index of the vertex with the given identifier, or -1 if there is no such vertex
+	 */
+	public int getIndex(long vertexId) {
+		return graph.getVertexIndex(vertexId);
+	}
+
+	/**
+	 * @return a read-only map from vertex identifiers to values, backed by this result
+	 */
+	public abstract Map<Long, ? extends Number> asMap();
+
+	/**
+	 * Entry set of a map view of the values, iterating over the vertices in index order.
+	 */
+	abstract class EntrySet<E> extends AbstractObjectSet<E> {
+
+		/**
+		 * @return a new map entry for the vertex with the given index
+		 */
+		abstract E entry(int index);
+
+		@Override
+		public ObjectIterator<E> iterator() {
+			return new AbstractObjectIterator<E>() {
+				private int index;
+
+				@Override
+				public boolean hasNext() {
+					return index < size();
+				}
+
+				@Override
+				public E next() {
+					if (index >= size()) {
+						throw new NoSuchElementException();
+					}
+					return entry(index++);
+				}
+			};
+		}
+
+		@Override
+		public int size() {
+			return VertexValues.this.size();
+		}
+	}
+}
@@ -0,0 +1,232 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.output;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import science.atlarge.graphalytics.reference.graph.DoubleVertexValues;
+import science.atlarge.graphalytics.reference.graph.LongVertexValues;
+import science.atlarge.graphalytics.reference.graph.VertexValues;
+import science.atlarge.graphalytics.reference.util.Parallel;
+
+/**
+ * Writes the output of an algorithm as one line per vertex, containing the vertex identifier and its value separated
+ * by a space. Lines are formatted directly from the arrays of a {@link VertexValues} result into a byte buffer that
+ * is written through a file channel, so no values are boxed. Integers are formatted as by
+ * {@link Long#toString(long)}, floating-point values by {@link Double#toString(double)}, and lines end with the
+ * platform line separator, which gives the same bytes as printing every entry with a {@link java.io.PrintWriter}.
+ * Vertices are written in ascending order of identifier.
+ *
+ * <p>With more than one shard the output path is a directory, and the vertices are split into contiguous ranges that
+ * are written in parallel to the files part-00000, part-00001, etc. in that directory.
+ */
+public final class VertexOutputWriter {
+
+	private static final int BUFFER_SIZE = 1 << 20;
+	/**
+	 * Upper bound on the length of a line: two numbers of at most 24 characters, a space and the line separator.
+	 */
+	private static final int MAX_LINE_LENGTH = 64;
+	private static final byte[] LINE_SEPARATOR =
+			System.getProperty("line.separator").getBytes(StandardCharsets.US_ASCII);
+
+	private final int numShards;
+
+	/**
+	 * @param numShards the number of files to write in parallel, or 1 to write a single file
+	 */
+	public VertexOutputWriter(int numShards) {
+		if (numShards < 1) {
+			throw new IllegalArgumentException("Invalid number of shards: " + numShards);
+		}
+		this.numShards = numShards;
+	}
+
+	public void write(Path path, VertexValues values) throws IOException {
+		if (values instanceof LongVertexValues) {
+			final LongVertexValues longValues = (LongVertexValues) values;
+			write(path, values, new ValueFormatter() {
+				@Override
+				public void appendValue(LineBuffer buffer, int vertex) {
+					buffer.append(longValues.get(vertex));
+				}
+			});
+		} else if (values instanceof DoubleVertexValues) {
+			final DoubleVertexValues doubleValues = (DoubleVertexValues) values;
+			write(path, values, new ValueFormatter() {
+				@Override
+				public void appendValue(LineBuffer buffer, int vertex) {
+					buffer.append(Double.toString(doubleValues.get(vertex)));
+				}
+			});
+		} else {
+			throw new IllegalArgumentException("Unsupported result type: " + values.getClass().getName());
+		}
+	}
+
+	private void write(final Path path, final VertexValues values, final ValueFormatter formatter)
+			throws IOException {
+		final int size = values.size();
+		final int numFiles = Math.max(1, Math.min(numShards, size));
+		if (numFiles == 1) {
+			writeRange(path, values, 0, size, formatter);
+			return;
+		}
+
+		clearDirectory(path);
+		try {
+			Parallel.forEach(numFiles, new Parallel.IndexTask() {
+				@Override
+				public void run(int shard) {
+					int from = (int) ((long) size * shard / numFiles);
+					int to = (int) ((long) size * (shard + 1) / numFiles);
+					try {
+						writeRange(path.resolve(String.format("part-%05d", shard)), values, from, to, formatter);
+					} catch (IOException e) {
+						throw new ShardWriteException(e);
+					}
+				}
+			});
+		} catch (ShardWriteException e) {
+			// The fork-join framework may rethrow a copy of the exception that wraps the original one
+			Throwable cause = e;
+			while (cause instanceof ShardWriteException) {
+				cause = cause.getCause();
+			}
+			throw new IOException("Failed to write " + path, cause);
+		}
+	}
+
+	/**
+	 * Creates an empty directory at the given path, replacing a file or removing the files of an earlier output.
+	 */
+	private static void clearDirectory(Path path) throws IOException {
+		if (Files.isDirectory(path)) {
+			try (DirectoryStream<Path> files = Files.newDirectoryStream(path)) {
+				for (Path file : files) {
+					Files.delete(file);
+				}
+			}
+		} else {
+			Files.deleteIfExists(path);
+			Files.createDirectories(path);
+		}
+	}
+
+	private static void writeRange(Path file, VertexValues values, int from, int to, ValueFormatter formatter)
+			throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			LineBuffer buffer = new LineBuffer(channel);
+			for (int v = from; v < to; v++) {
+				buffer.append(values.getVertexId(v));
+				buffer.append(' ');
+				formatter.appendValue(buffer, v);
+				buffer.endLine();
+			}
+			buffer.flush();
+		}
+	}
+
+	/**
+	 * Appends the value of a vertex to a line.
+	 */
+	private interface ValueFormatter {
+		void appendValue(LineBuffer buffer, int vertex);
+	}
+
+	/**
+	 * Buffer of ASCII text that is written to a channel whenever it might not fit another line.
+	 */
+	private static final class LineBuffer {
+
+		private final FileChannel channel;
+		private final byte[] bytes = new byte[BUFFER_SIZE];
+		private final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		private int length;
+
+		LineBuffer(FileChannel channel) {
+			this.channel = channel;
+		}
+
+		void append(char c) {
+			bytes[length++] = (byte) c;
+		}
+
+		void append(String s) {
+			for (int i = 0; i < s.length(); i++) {
+				bytes[length++] = (byte) s.charAt(i);
+			}
+		}
+
+		void append(long value) {
+			if (value == Long.MIN_VALUE) {
+				append(Long.toString(value));
+				return;
+			}
+			if (value < 0) {
+				bytes[length++] = '-';
+				value = -value;
+			}
+			int end = length + numberOfDigits(value);
+			for (int i = end - 1; i >= length; i--) {
+				bytes[i] = (byte) ('0' + value % 10);
+				value /= 10;
+			}
+			length = end;
+		}
+
+		void endLine() throws IOException {
+			System.arraycopy(LINE_SEPARATOR, 0, bytes, length, LINE_SEPARATOR.length);
+			length += LINE_SEPARATOR.length;
+			if (length > bytes.length - MAX_LINE_LENGTH) {
+				flush();
+			}
+		}
+
+		void flush() throws IOException {
+			buffer.clear().limit(length);
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+			length = 0;
+		}
+
+		/**
+		 * @return the number of decimal digits of a non-negative value
+		 */
+		private static int numberOfDigits(long value) {
+			int digits = 1;
+			for (long bound = 10; digits < 19 && value >= bound; bound *= 10) {
+				digits++;
+			}
+			return digits;
+		}
+	}
+
+	private static final class ShardWriteException extends RuntimeException {
+		ShardWriteException(IOException cause) {
+			super(cause);
+		}
+	}
+}
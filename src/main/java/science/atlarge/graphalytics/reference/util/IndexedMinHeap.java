@@ -0,0 +1,136 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.util;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * Binary min-heap of int items in [0, capacity) with double keys. The heap tracks the position of every item, so
+ * the key of an item already in the heap can be decreased in O(log n) instead of inserting a duplicate entry. All
+ * storage is allocated up front; no operation allocates.
+ */
+public final class IndexedMinHeap {
+
+	private static final int ABSENT = -1;
+
+	private final int[] heap;
+	private final int[] positions;
+	private final double[] keys;
+	private int size;
+
+	public IndexedMinHeap(int capacity) {
+		this.heap = new int[capacity];
+		this.positions = new int[capacity];
+		this.keys = new double[capacity];
+		Arrays.fill(positions, ABSENT);
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean contains(int item) {
+		return positions[item] != ABSENT;
+	}
+
+	/**
+	 * Inserts an item, or lowers its key if the item is already in the heap and the new key is lower.
+	 */
+	public void insertOrDecrease(int item, double key) {
+		int position = positions[item];
+		if (position == ABSENT) {
+			keys[item] = key;
+			heap[size] = item;
+			positions[item] = size;
+			siftUp(size++);
+		} else if (key < keys[item]) {
+			keys[item] = key;
+			siftUp(position);
+		}
+	}
+
+	/**
+	 * @return the key of the item at the top of the heap
+	 */
+	public double peekKey() {
+		if (size == 0) {
+			throw new NoSuchElementException();
+		}
+		return keys[heap[0]];
+	}
+
+	/**
+	 * Removes the item with the lowest key.
+	 */
+	public int poll() {
+		if (size == 0) {
+			throw new NoSuchElementException();
+		}
+		int top = heap[0];
+		positions[top] = ABSENT;
+		if (--size > 0) {
+			heap[0] = heap[size];
+			positions[heap[0]] = 0;
+			siftDown(0);
+		}
+		return top;
+	}
+
+	private void siftUp(int position) {
+		int item = heap[position];
+		double key = keys[item];
+		while (position > 0) {
+			int parentPosition = (position - 1) >>> 1;
+			int parent = heap[parentPosition];
+			if (keys[parent] <= key) {
+				break;
+			}
+			heap[position] = parent;
+			positions[parent] = position;
+			position = parentPosition;
+		}
+		heap[position] = item;
+		positions[item] = position;
+	}
+
+	private void siftDown(int position) {
+		int item = heap[position];
+		double key = keys[item];
+		while (true) {
+			int childPosition = 2 * position + 1;
+			if (childPosition >= size) {
+				break;
+			}
+			if (childPosition + 1 < size && keys[heap[childPosition + 1]] < keys[heap[childPosition]]) {
+				childPosition++;
+			}
+			int child = heap[childPosition];
+			if (key <= keys[child]) {
+				break;
+			}
+			heap[position] = child;
+			positions[child] = position;
+			position = childPosition;
+		}
+		heap[position] = item;
+		positions[item] = position;
+	}
+}
@@ -0,0 +1,215 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Helpers for running data-parallel loops on a fork-join pool. The owner of the pool, such as a platform hook,
+ * starts it with {@link #startPool(int)} before running parallel loops and shuts it down afterwards.
+ */
+public final class Parallel {
+
+	private static final Logger LOG = LogManager.getLogger();
+
+	/**
+	 * Maximum time that a worker waits for the other workers to start when the pool is started.
+	 */
+	private static final long START_TIMEOUT_MILLIS = 1000;
+
+	private static ForkJoinPool pool;
+	private static int parallelism = Runtime.getRuntime().availableProcessors();
+	private static int chunkSize;
+
+	private Parallel() {
+	}
+
+	/**
+	 * Creates the pool used by all parallel loops and waits until all of its workers are running, so that the first
+	 * parallel loop does not pay for starting threads. Starting a pool that is already running with the same number
+	 * of workers has no other effect.
+	 *
+	 * @param numThreads number of worker threads, or 0 to use one worker per core
+	 * @throws IllegalStateException if a pool with a different number of workers is running
+	 */
+	public static void startPool(int numThreads) {
+		int requested = numThreads > 0 ? numThreads : Runtime.getRuntime().availableProcessors();
+		ForkJoinPool workers;
+		synchronized (Parallel.class) {
+			if (pool != null && pool.getParallelism() != requested) {
+				throw new IllegalStateException("Cannot start a pool with " + requested + " threads, a pool with "
+						+ pool.getParallelism() + " threads is running");
+			}
+			if (pool == null) {
+				pool = new ForkJoinPool(requested);
+				parallelism = requested;
+			}
+			workers = pool;
+		}
+
+		final CountDownLatch started = new CountDownLatch(workers.getParallelism());
+		List<ForkJoinTask<?>> tasks = new ArrayList<>();
+		for (int i = 0; i < workers.getParallelism(); i++) {
+			tasks.add(workers.submit(new Runnable() {
+				@Override
+				public void run() {
+					// Keep this worker busy until all tasks have started, so that every task gets its own worker
+					started.countDown();
+					try {
+						started.await(START_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+			}));
+		}
+		for (ForkJoinTask<?> task : tasks) {
+			task.join();
+		}
+	}
+
+	/**
+	 * Shuts down the pool, if any. Parallel loops require a new call to {@link #startPool(int)}.
+	 */
+	public static synchronized void shutdown() {
+		if (pool != null) {
+			pool.shutdown();
+			pool = null;
+			parallelism = Runtime.getRuntime().availableProcessors();
+		}
+	}
+
+	/**
+	 * @return the number of workers of the running pool, or of the default pool if none is running
+	 */
+	public static synchronized int getParallelism() {
+		return parallelism;
+	}
+
+	/**
+	 * Sets the size of the sub-ranges of parallel loops that do not specify a grain size.
+	 *
+	 * @param size maximum number of elements per sub-range, or 0 to derive it from the range size and parallelism
+	 */
+	public static synchronized void setChunkSize(int size) {
+		chunkSize = Math.max(0, size);
+	}
+
+	public static synchronized int getChunkSize() {
+		return chunkSize;
+	}
+
+	/**
+	 * @return the running pool; if no pool was started, a default pool with one worker per core is started and a
+	 * warning is logged, as the owner of the pool is then unclear
+	 */
+	private static synchronized ForkJoinPool getPool() {
+		if (pool == null) {
+			LOG.warn("Parallel loop without a started pool, starting a pool with " + parallelism + " threads.");
+			pool = new ForkJoinPool(parallelism);
+		}
+		return pool;
+	}
+
+	/**
+	 * Body of a parallel loop, invoked for disjoint sub-ranges of the iteration space.
+	 */
+	public interface RangeTask {
+		void run(int from, int to);
+	}
+
+	/**
+	 * Body of a parallel loop over a fixed number of independent tasks.
+	 */
+	public interface IndexTask {
+		void run(int index);
+	}
+
+	/**
+	 * Runs a task over [from, to) by recursively splitting the range until it is at most grainSize elements long.
+	 * Idle workers steal the remaining halves, so ranges with uneven cost are balanced dynamically.
+	 *
+	 * @param grainSize maximum size of a sub-range, or 0 to use the configured chunk size
+	 */
+	public static void forRange(int from, int to, int grainSize, RangeTask task) {
+		if (from >= to) {
+			return;
+		}
+		if (grainSize <= 0) {
+			grainSize = getChunkSize();
+		}
+		if (grainSize <= 0) {
+			grainSize = Math.max(1, (to - from) / (getParallelism() * 8));
+		}
+		invoke(new RangeAction(from, to, grainSize, task));
+	}
+
+	/**
+	 * Runs task(0), ..., task(numTasks - 1) in parallel.
+	 */
+	public static void forEach(int numTasks, final IndexTask task) {
+		forRange(0, numTasks, 1, new RangeTask() {
+			@Override
+			public void run(int from, int to) {
+				for (int i = from; i < to; i++) {
+					task.run(i);
+				}
+			}
+		});
+	}
+
+	private static void invoke(ForkJoinTask<?> task) {
+		if (ForkJoinTask.inForkJoinPool()) {
+			task.invoke();
+		} else {
+			getPool().invoke(task);
+		}
+	}
+
+	private static final class RangeAction extends RecursiveAction {
+
+		private final int from;
+		private final int to;
+		private final int grainSize;
+		private final RangeTask task;
+
+		RangeAction(int from, int to, int grainSize, RangeTask task) {
+			this.from = from;
+			this.to = to;
+			this.grainSize = grainSize;
+			this.task = task;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= grainSize) {
+				task.run(from, to);
+			} else {
+				int middle = (from + to) >>> 1;
+				invokeAll(new RangeAction(from, middle, grainSize, task), new RangeAction(middle, to, grainSize, task));
+			}
+		}
+	}
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+
+/**
+ * Records the durations of the phases of a benchmark run in memory, with the resolution of
+ * {@link System#nanoTime()}. A phase is timed by taking a timestamp with {@link #start()} and passing it to
+ * {@link #record(String, long)} when the phase ends. A phase name may be recorded more than once, in which case its
+ * durations are added. The timer is meant to be used by the thread that drives a run and is not thread-safe.
+ */
+public final class PhaseTimer {
+
+	private final List<String> phases = new ArrayList<>();
+	private final LongArrayList durations = new LongArrayList();
+
+	/**
+	 * @return the name of the phase of one iteration of an iterative algorithm
+	 */
+	public static String iterationPhase(int iteration) {
+		return "iteration " + iteration;
+	}
+
+	/**
+	 * @return a timestamp marking the start of a phase
+	 */
+	public long start() {
+		return System.nanoTime();
+	}
+
+	/**
+	 * Records a phase that started at the given timestamp and ends now.
+	 *
+	 * @return the duration of the phase in nanoseconds
+	 */
+	public long record(String phase, long startNanos) {
+		long duration = System.nanoTime() - startNanos;
+		int index = phases.indexOf(phase);
+		if (index < 0) {
+			phases.add(phase);
+			durations.add(duration);
+		} else {
+			durations.set(index, durations.getLong(index) + duration);
+		}
+		return duration;
+	}
+
+	/**
+	 * @return the names of all recorded phases, in the order in which they were first recorded
+	 */
+	public List<String> getPhases() {
+		return Collections.unmodifiableList(phases);
+	}
+
+	/**
+	 * @return the total duration of a phase in nanoseconds, or 0 if it was not recorded
+	 */
+	public long getNanos(String phase) {
+		int index = phases.indexOf(phase);
+		return index >= 0 ? durations.getLong(index) : 0L;
+	}
+}
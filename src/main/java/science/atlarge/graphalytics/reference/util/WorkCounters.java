@@ -0,0 +1,68 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.util;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Named counters of the work done by an algorithm, such as the number of edges scanned. Counters are looked up once,
+ * before a loop, and parallel loops count in local variables that every task adds to the shared counter when it
+ * ends. The shared counters are therefore updated once per task instead of once per edge.
+ */
+public final class WorkCounters {
+
+	/**
+	 * Number of edges read by an algorithm, used to compute the traversed edges per second.
+	 */
+	public static final String EDGES_SCANNED = "edges scanned";
+
+	private final Map<String, AtomicLong> counters = new LinkedHashMap<>();
+
+	/**
+	 * @return the counter with the given name, created with value 0 if it does not exist yet
+	 */
+	public synchronized AtomicLong get(String name) {
+		AtomicLong counter = counters.get(name);
+		if (counter == null) {
+			counter = new AtomicLong();
+			counters.put(name, counter);
+		}
+		return counter;
+	}
+
+	public void add(String name, long delta) {
+		get(name).addAndGet(delta);
+	}
+
+	/**
+	 * @return the names of all counters, in the order in which they were created
+	 */
+	public synchronized List<String> getNames() {
+		return new ArrayList<>(counters.keySet());
+	}
+
+	/**
+	 * @return the value of a counter, or 0 if it does not exist
+	 */
+	public synchronized long getValue(String name) {
+		AtomicLong counter = counters.get(name);
+		return counter != null ? counter.get() : 0L;
+	}
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.algorithms;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+import science.atlarge.graphalytics.domain.algorithms.BreadthFirstSearchParameters;
+import science.atlarge.graphalytics.domain.algorithms.CommunityDetectionLPParameters;
+import science.atlarge.graphalytics.domain.algorithms.PageRankParameters;
+import science.atlarge.graphalytics.domain.algorithms.SingleSourceShortestPathsParameters;
+import science.atlarge.graphalytics.reference.algorithms.bfs.BreadthFirstSearchJob;
+import science.atlarge.graphalytics.reference.algorithms.cdlp.CommunityDetectionLPJob;
+import science.atlarge.graphalytics.reference.algorithms.lcc.LocalClusteringCoefficientJob;
+import science.atlarge.graphalytics.reference.algorithms.pr.PageRankJob;
+import science.atlarge.graphalytics.reference.algorithms.sssp.SingleSourceShortestPathJob;
+import science.atlarge.graphalytics.reference.algorithms.wcc.WeaklyConnectedComponentsJob;
+import science.atlarge.graphalytics.reference.graph.CsrGraph;
+import science.atlarge.graphalytics.reference.graph.DoubleVertexValues;
+import science.atlarge.graphalytics.reference.graph.LongVertexValues;
+import science.atlarge.graphalytics.reference.graph.SyntheticGraphGenerator;
+import science.atlarge.graphalytics.reference.graph.SyntheticGraphGenerator.Topology;
+
+/**
+ * Compares the parallel implementation of every algorithm with the sequential one on generated graphs, which are
+ * much larger and more skewed than the validation datasets.
+ */
+public class SyntheticGraphJobTest {
+
+	private static final int NUM_VERTICES = 1 << 13;
+	private static final int AVERAGE_DEGREE = 8;
+	private static final long SEED = 42L;
+	private static final int NUM_ITERATIONS = 10;
+	private static final double EPSILON = 1e-9;
+
+	@Test
+	public void testDirectedRmat() {
+		testJobs(Topology.RMAT, true);
+	}
+
+	@Test
+	public void testUndirectedRmat() {
+		testJobs(Topology.RMAT, false);
+	}
+
+	@Test
+	public void testDirectedUniform() {
+		testJobs(Topology.UNIFORM, true);
+	}
+
+	@Test
+	public void testUndirectedUniform() {
+		testJobs(Topology.UNIFORM, false);
+	}
+
+	@Test
+	public void testDirectedGrid() {
+		testJobs(Topology.GRID, true);
+	}
+
+	@Test
+	public void testUndirectedGrid() {
+		testJobs(Topology.GRID, false);
+	}
+
+	private void testJobs(Topology topology, boolean directed) {
+		CsrGraph graph = new SyntheticGraphGenerator(topology, NUM_VERTICES, AVERAGE_DEGREE, directed, true, SEED)
+				.generate();
+		long source = graph.getVertexId(0);
+
+		BreadthFirstSearchParameters bfsParameters = new BreadthFirstSearchParameters(source);
+		assertValuesEqual("BFS", new BreadthFirstSearchJob(graph, bfsParameters, false).run(),
+				new BreadthFirstSearchJob(graph, bfsParameters, true).run());
+
+		CommunityDetectionLPParameters cdlpParameters = new CommunityDetectionLPParameters(NUM_ITERATIONS);
+		assertValuesEqual("CDLP", new CommunityDetectionLPJob(graph, cdlpParameters, false).run(),
+				new CommunityDetectionLPJob(graph, cdlpParameters, true).run());
+
+		assertValuesEqual("LCC", new LocalClusteringCoefficientJob(graph, false).run(),
+				new LocalClusteringCoefficientJob(graph, true).run());
+
+		PageRankParameters prParameters = new PageRankParameters(0.85f, NUM_ITERATIONS);
+		assertValuesEqual("PR", new PageRankJob(graph, prParameters, false).run(),
+				new PageRankJob(graph, prParameters, true).run());
+
+		SingleSourceShortestPathsParameters ssspParameters = new SingleSourceShortestPathsParameters(source);
+		assertValuesEqual("SSSP", new SingleSourceShortestPathJob(graph, ssspParameters, false, 0.0).run(),
+				new SingleSourceShortestPathJob(graph, ssspParameters, true, 0.0).run());
+
+		assertValuesEqual("WCC", new WeaklyConnectedComponentsJob(graph, false).run(),
+				new WeaklyConnectedComponentsJob(graph, true).run());
+	}
+
+	private static void assertValuesEqual(String algorithm, LongVertexValues expected, LongVertexValues actual) {
+		assertEquals(algorithm + " result size", expected.size(), actual.size());
+		for (int v = 0; v < expected.size(); v++) {
+			assertEquals(algorithm + " value of vertex " + expected.getVertexId(v), expected.get(v), actual.get(v));
+		}
+	}
+
+	private static void assertValuesEqual(String algorithm, DoubleVertexValues expected, DoubleVertexValues actual) {
+		assertEquals(algorithm + " result size", expected.size(), actual.size());
+		for (int v = 0; v < expected.size(); v++) {
+			double delta = EPSILON * Math.max(1.0, Math.abs(expected.get(v)));
+			assertEquals(algorithm + " value of vertex " + expected.getVertexId(v), expected.get(v), actual.get(v),
+					delta);
+		}
+	}
+}
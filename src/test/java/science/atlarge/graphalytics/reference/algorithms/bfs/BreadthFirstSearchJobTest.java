@@ -15,20 +15,41 @@
  */
 package science.atlarge.graphalytics.reference.algorithms.bfs;
 
-import it.unimi.dsi.fastutil.longs.Long2LongMap;
+import java.util.Arrays;
+import java.util.Collection;
+
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
 import science.atlarge.graphalytics.domain.algorithms.BreadthFirstSearchParameters;
-import science.atlarge.graphalytics.util.graph.PropertyGraph;
+import science.atlarge.graphalytics.reference.ReferencePlatformConfiguration.GraphStorage;
+import science.atlarge.graphalytics.reference.graph.CsrGraph;
+import science.atlarge.graphalytics.reference.graph.LongVertexValues;
+import science.atlarge.graphalytics.reference.graph.TestGraphs;
 import science.atlarge.graphalytics.validation.GraphStructure;
 import science.atlarge.graphalytics.validation.algorithms.bfs.BreadthFirstSearchOutput;
 import science.atlarge.graphalytics.validation.algorithms.bfs.BreadthFirstSearchValidationTest;
 
 /**
- * Validation tests for the reference BFS implementation.
+ * Validation tests for the reference BFS implementation, in sequential and parallel mode.
  *
  * @author Tim Hegeman
  */
+@RunWith(Parameterized.class)
 public class BreadthFirstSearchJobTest extends BreadthFirstSearchValidationTest {
 
+	@Parameters(name = "{0}, parallel={1}")
+	public static Collection<Object[]> parameters() {
+		return TestGraphs.withEveryStorage(Arrays.asList(new Object[][] {{false}, {true}}));
+	}
+
+	@Parameter(0)
+	public GraphStorage storage;
+
+	@Parameter(1)
+	public boolean parallel;
+
 	@Override
 	public BreadthFirstSearchOutput executeDirectedBreadthFirstSearch(GraphStructure graph,
 			BreadthFirstSearchParameters parameters) throws Exception {
@@ -43,9 +64,9 @@ public class BreadthFirstSearchJobTest extends BreadthFirstSearchValidationTest
 
 	private BreadthFirstSearchOutput execute(GraphStructure graph,
 			BreadthFirstSearchParameters parameters, boolean directed) throws Exception {
-		PropertyGraph<Void, Void> pgraph = graph.toPropertyGraph();
-		Long2LongMap output = new BreadthFirstSearchJob(pgraph, parameters).run();
-		return new BreadthFirstSearchOutput(output);
+		CsrGraph csrGraph = TestGraphs.store(CsrGraph.fromPropertyGraph(graph.toPropertyGraph(), directed), storage);
+		LongVertexValues output = new BreadthFirstSearchJob(csrGraph, parameters, parallel).run();
+		return new BreadthFirstSearchOutput(output.asMap());
 	}
 
 }
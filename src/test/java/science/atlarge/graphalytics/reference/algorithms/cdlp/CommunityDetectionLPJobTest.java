@@ -15,20 +15,41 @@
  */
 package science.atlarge.graphalytics.reference.algorithms.cdlp;
 
-import it.unimi.dsi.fastutil.longs.Long2LongMap;
+import java.util.Arrays;
+import java.util.Collection;
+
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
 import science.atlarge.graphalytics.domain.algorithms.CommunityDetectionLPParameters;
-import science.atlarge.graphalytics.util.graph.PropertyGraph;
+import science.atlarge.graphalytics.reference.ReferencePlatformConfiguration.GraphStorage;
+import science.atlarge.graphalytics.reference.graph.CsrGraph;
+import science.atlarge.graphalytics.reference.graph.LongVertexValues;
+import science.atlarge.graphalytics.reference.graph.TestGraphs;
 import science.atlarge.graphalytics.validation.GraphStructure;
 import science.atlarge.graphalytics.validation.algorithms.cdlp.CommunityDetectionLPOutput;
 import science.atlarge.graphalytics.validation.algorithms.cdlp.CommunityDetectionLPValidationTest;
 
 /**
- * Validation tests for the reference community detection implementation.
+ * Validation tests for the reference community detection implementation, in sequential and parallel mode.
  *
  * @author Stijn Heldens
  */
+@RunWith(Parameterized.class)
 public class CommunityDetectionLPJobTest extends CommunityDetectionLPValidationTest {
 
+	@Parameters(name = "{0}, parallel={1}")
+	public static Collection<Object[]> parameters() {
+		return TestGraphs.withEveryStorage(Arrays.asList(new Object[][] {{false}, {true}}));
+	}
+
+	@Parameter(0)
+	public GraphStorage storage;
+
+	@Parameter(1)
+	public boolean parallel;
+
 	@Override
 	public CommunityDetectionLPOutput executeDirectedCommunityDetection(GraphStructure graph,
                                                                         CommunityDetectionLPParameters parameters) throws Exception {
@@ -43,8 +64,8 @@ public class CommunityDetectionLPJobTest extends CommunityDetectionLPValidationT
 
 	private CommunityDetectionLPOutput execute(GraphStructure graph, CommunityDetectionLPParameters parameters,
 			boolean directed) throws Exception {
-		PropertyGraph<Void, Void> pgraph = graph.toPropertyGraph();
-		Long2LongMap output = new CommunityDetectionLPJob(pgraph, parameters).run();
-		return new CommunityDetectionLPOutput(output);
+		CsrGraph csrGraph = TestGraphs.store(CsrGraph.fromPropertyGraph(graph.toPropertyGraph(), directed), storage);
+		LongVertexValues output = new CommunityDetectionLPJob(csrGraph, parameters, parallel).run();
+		return new CommunityDetectionLPOutput(output.asMap());
 	}
 }
@@ -15,20 +15,46 @@
  */
 package science.atlarge.graphalytics.reference.algorithms.lcc;
 
-import it.unimi.dsi.fastutil.longs.Long2DoubleMap;
-import science.atlarge.graphalytics.util.graph.PropertyGraph;
+import java.util.ArrayList;
+import java.util.Collection;
+
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+import science.atlarge.graphalytics.reference.ReferencePlatformConfiguration.GraphStorage;
+import science.atlarge.graphalytics.reference.graph.CsrGraph;
+import science.atlarge.graphalytics.reference.graph.DoubleVertexValues;
+import science.atlarge.graphalytics.reference.graph.TestGraphs;
 import science.atlarge.graphalytics.validation.GraphStructure;
 import science.atlarge.graphalytics.validation.algorithms.lcc.LocalClusteringCoefficientOutput;
 import science.atlarge.graphalytics.validation.algorithms.lcc.LocalClusteringCoefficientValidationTest;
 ;
 
 /**
- * Validation tests for the reference local clustering coefficient calculation implementation.
+ * Validation tests for the reference local clustering coefficient calculation implementation, with every
+ * triangle counting kernel.
  *
  * @author Stijn Heldens
  */
+@RunWith(Parameterized.class)
 public class LocalClusteringCoefficientJobTest extends LocalClusteringCoefficientValidationTest {
 
+	@Parameters(name = "{0}, {1}")
+	public static Collection<Object[]> parameters() {
+		Collection<Object[]> parameters = new ArrayList<>();
+		for (LocalClusteringCoefficientJob.Kernel kernel : LocalClusteringCoefficientJob.Kernel.values()) {
+			parameters.add(new Object[] {kernel});
+		}
+		return TestGraphs.withEveryStorage(parameters);
+	}
+
+	@Parameter(0)
+	public GraphStorage storage;
+
+	@Parameter(1)
+	public LocalClusteringCoefficientJob.Kernel kernel;
+
 	@Override
 	public LocalClusteringCoefficientOutput executeDirectedLocalClusteringCoefficient(GraphStructure graph)
 			throws Exception {
@@ -42,9 +68,9 @@ public class LocalClusteringCoefficientJobTest extends LocalClusteringCoefficien
 	}
 
 	private LocalClusteringCoefficientOutput execute(GraphStructure graph, boolean directed) throws Exception {
-		PropertyGraph<Void, Void> pgraph = graph.toPropertyGraph();
-		Long2DoubleMap output = new LocalClusteringCoefficientJob(pgraph).run();
-		return new LocalClusteringCoefficientOutput(output);
+		CsrGraph csrGraph = TestGraphs.store(CsrGraph.fromPropertyGraph(graph.toPropertyGraph(), directed), storage);
+		DoubleVertexValues output = new LocalClusteringCoefficientJob(csrGraph, kernel).run();
+		return new LocalClusteringCoefficientOutput(output.asMap());
 	}
 
 }
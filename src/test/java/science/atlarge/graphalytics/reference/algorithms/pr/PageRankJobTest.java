@@ -15,20 +15,47 @@
  */
 package science.atlarge.graphalytics.reference.algorithms.pr;
 
-import it.unimi.dsi.fastutil.longs.Long2DoubleMap;
+import java.util.Arrays;
+import java.util.Collection;
+
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
 import science.atlarge.graphalytics.domain.algorithms.PageRankParameters;
-import science.atlarge.graphalytics.util.graph.PropertyGraph;
+import science.atlarge.graphalytics.reference.ReferencePlatformConfiguration.GraphStorage;
+import science.atlarge.graphalytics.reference.graph.CsrGraph;
+import science.atlarge.graphalytics.reference.graph.DoubleVertexValues;
+import science.atlarge.graphalytics.reference.graph.TestGraphs;
 import science.atlarge.graphalytics.validation.GraphStructure;
 import science.atlarge.graphalytics.validation.algorithms.pr.PageRankOutput;
 import science.atlarge.graphalytics.validation.algorithms.pr.PageRankValidationTest;
 
 /**
- * Validation tests for the reference PageRank implementation.
+ * Validation tests for the reference PageRank implementation, in sequential and parallel mode, both with and
+ * without propagation blocking. The propagation blocking cache size is chosen so that the small test graphs are
+ * split into several blocks.
  *
  * @author Stijn Heldens
  */
+@RunWith(Parameterized.class)
 public class PageRankJobTest extends PageRankValidationTest {
 
+	@Parameters(name = "{0}, parallel={1}, cacheSize={2}")
+	public static Collection<Object[]> parameters() {
+		return TestGraphs.withEveryStorage(Arrays.asList(new Object[][] {{false, 0L}, {true, 0L}, {false, 24L},
+				{true, 24L}}));
+	}
+
+	@Parameter(0)
+	public GraphStorage storage;
+
+	@Parameter(1)
+	public boolean parallel;
+
+	@Parameter(2)
+	public long cacheSize;
+
 	@Override
 	public PageRankOutput executeDirectedPageRank(GraphStructure graph, PageRankParameters parameters)
 			throws Exception {
@@ -43,9 +70,9 @@ public class PageRankJobTest extends PageRankValidationTest {
 
 	private PageRankOutput execute(GraphStructure graph, PageRankParameters parameters, boolean directed)
 			throws Exception {
-		PropertyGraph<Void, Void> pgraph = graph.toPropertyGraph();
-		Long2DoubleMap output = new PageRankJob(pgraph, parameters).run();
-		return new PageRankOutput(output);
+		CsrGraph csrGraph = TestGraphs.store(CsrGraph.fromPropertyGraph(graph.toPropertyGraph(), directed), storage);
+		DoubleVertexValues output = new PageRankJob(csrGraph, parameters, parallel, cacheSize).run();
+		return new PageRankOutput(output.asMap());
 	}
 
 }
@@ -15,37 +15,59 @@
  */
 package science.atlarge.graphalytics.reference.algorithms.sssp;
 
-import it.unimi.dsi.fastutil.longs.Long2DoubleMap;
+import java.util.Arrays;
+import java.util.Collection;
+
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
 import science.atlarge.graphalytics.domain.algorithms.SingleSourceShortestPathsParameters;
+import science.atlarge.graphalytics.reference.ReferencePlatformConfiguration.GraphStorage;
+import science.atlarge.graphalytics.reference.graph.CsrGraph;
+import science.atlarge.graphalytics.reference.graph.DoubleVertexValues;
+import science.atlarge.graphalytics.reference.graph.TestGraphs;
 import science.atlarge.graphalytics.util.graph.PropertyGraph;
 import science.atlarge.graphalytics.validation.algorithms.sssp.SingleSourceShortestPathsOutput;
 import science.atlarge.graphalytics.validation.algorithms.sssp.SingleSourceShortestPathsValidationTest;
 
 /**
- * Validation tests for the reference BFS implementation.
+ * Validation tests for the reference SSSP implementation, in sequential and parallel (delta-stepping) mode.
  *
  * @author Tim Hegeman
  */
+@RunWith(Parameterized.class)
 public class SingleSourceShortestPathJobTest extends SingleSourceShortestPathsValidationTest {
 
+	@Parameters(name = "{0}, parallel={1}")
+	public static Collection<Object[]> parameters() {
+		return TestGraphs.withEveryStorage(Arrays.asList(new Object[][] {{false}, {true}}));
+	}
+
+	@Parameter(0)
+	public GraphStorage storage;
+
+	@Parameter(1)
+	public boolean parallel;
 
 	@Override
 	public SingleSourceShortestPathsOutput executeDirectedSingleSourceShortestPaths(
 			PropertyGraph<Void, Double> graph,
 			SingleSourceShortestPathsParameters parameters) throws Exception {
-		return execute(graph, parameters);
+		return execute(graph, parameters, true);
 	}
 
 	@Override
 	public SingleSourceShortestPathsOutput executeUndirectedSingleSourceShortestPaths(
 			PropertyGraph<Void, Double> graph,
 			SingleSourceShortestPathsParameters parameters) throws Exception {
-		return execute(graph, parameters);
+		return execute(graph, parameters, false);
 	}
 
 	private SingleSourceShortestPathsOutput execute(PropertyGraph<Void, Double> graph,
-			SingleSourceShortestPathsParameters parameters) throws Exception {
-		Long2DoubleMap output = new SingleSourceShortestPathJob(graph, parameters).run();
-		return new SingleSourceShortestPathsOutput(output);
+			SingleSourceShortestPathsParameters parameters, boolean directed) throws Exception {
+		CsrGraph csrGraph = TestGraphs.store(CsrGraph.fromPropertyGraph(graph, directed), storage);
+		DoubleVertexValues output = new SingleSourceShortestPathJob(csrGraph, parameters, parallel, 0.0).run();
+		return new SingleSourceShortestPathsOutput(output.asMap());
 	}
 }
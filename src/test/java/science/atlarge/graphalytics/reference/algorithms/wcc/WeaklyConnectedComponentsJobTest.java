@@ -15,19 +15,41 @@
  */
 package science.atlarge.graphalytics.reference.algorithms.wcc;
 
-import it.unimi.dsi.fastutil.longs.Long2LongMap;
-import science.atlarge.graphalytics.util.graph.PropertyGraph;
+import java.util.Arrays;
+import java.util.Collection;
+
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+import science.atlarge.graphalytics.reference.ReferencePlatformConfiguration.GraphStorage;
+import science.atlarge.graphalytics.reference.graph.CsrGraph;
+import science.atlarge.graphalytics.reference.graph.LongVertexValues;
+import science.atlarge.graphalytics.reference.graph.TestGraphs;
 import science.atlarge.graphalytics.validation.GraphStructure;
 import science.atlarge.graphalytics.validation.algorithms.wcc.WeaklyConnectedComponentsOutput;
 import science.atlarge.graphalytics.validation.algorithms.wcc.WeaklyConnectedComponentsValidationTest;
 
 /**
- * Validation tests for the reference connected components implementation.
+ * Validation tests for the reference connected components implementation, in sequential and parallel
+ * (union-find) mode.
  *
  * @author Stijn Heldens
  */
+@RunWith(Parameterized.class)
 public class WeaklyConnectedComponentsJobTest extends WeaklyConnectedComponentsValidationTest {
 
+	@Parameters(name = "{0}, parallel={1}")
+	public static Collection<Object[]> parameters() {
+		return TestGraphs.withEveryStorage(Arrays.asList(new Object[][] {{false}, {true}}));
+	}
+
+	@Parameter(0)
+	public GraphStorage storage;
+
+	@Parameter(1)
+	public boolean parallel;
+
 	@Override
 	public WeaklyConnectedComponentsOutput executeDirectedConnectedComponents(GraphStructure graph) throws Exception {
 		return execute(graph, true);
@@ -39,8 +61,8 @@ public class WeaklyConnectedComponentsJobTest extends WeaklyConnectedComponentsV
 	}
 
 	private WeaklyConnectedComponentsOutput execute(GraphStructure graph, boolean directed) throws Exception {
-		PropertyGraph<Void, Void> pgraph = graph.toPropertyGraph();
-		Long2LongMap output = new WeaklyConnectedComponentsJob(pgraph).run();
-		return new WeaklyConnectedComponentsOutput(output);
+		CsrGraph csrGraph = TestGraphs.store(CsrGraph.fromPropertyGraph(graph.toPropertyGraph(), directed), storage);
+		LongVertexValues output = new WeaklyConnectedComponentsJob(csrGraph, parallel).run();
+		return new WeaklyConnectedComponentsOutput(output.asMap());
 	}
 }
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.graph;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Assertions that compare two CSR graphs vertex by vertex and edge by edge.
+ */
+public final class CsrGraphAssert {
+
+	private CsrGraphAssert() {
+	}
+
+	/**
+	 * Asserts that two graphs have the same vertices, the same outgoing and incoming edges in the same order, and
+	 * identical weights.
+	 */
+	public static void assertSameGraph(CsrGraph expected, CsrGraph actual) {
+		assertEquals("directed", expected.isDirected(), actual.isDirected());
+		assertEquals("weighted", expected.isWeighted(), actual.isWeighted());
+		assertEquals("number of vertices", expected.getNumberOfVertices(), actual.getNumberOfVertices());
+		assertEquals("number of edges", expected.getNumberOfEdges(), actual.getNumberOfEdges());
+		for (int v = 0; v < expected.getNumberOfVertices(); v++) {
+			long id = expected.getVertexId(v);
+			assertEquals("vertex identifier", id, actual.getVertexId(v));
+			assertEquals("out-degree of " + id, expected.getOutDegree(v), actual.getOutDegree(v));
+			for (int i = 0; i < expected.getOutDegree(v); i++) {
+				int expectedEdge = expected.getOutEdgesBegin(v) + i;
+				int actualEdge = actual.getOutEdgesBegin(v) + i;
+				assertEquals("out-neighbour of " + id, expected.getOutNeighbour(expectedEdge),
+						actual.getOutNeighbour(actualEdge));
+				if (expected.isWeighted()) {
+					assertEquals("weight of out-edge of " + id, expected.getOutWeight(expectedEdge),
+							actual.getOutWeight(actualEdge), 0.0);
+				}
+			}
+			if (expected.isDirected()) {
+				assertEquals("in-degree of " + id, expected.getInDegree(v), actual.getInDegree(v));
+				for (int i = 0; i < expected.getInDegree(v); i++) {
+					assertEquals("in-neighbour of " + id, expected.getInNeighbour(expected.getInEdgesBegin(v) + i),
+							actual.getInNeighbour(actual.getInEdgesBegin(v) + i));
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.graph;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static science.atlarge.graphalytics.reference.graph.CsrGraphAssert.assertSameGraph;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import science.atlarge.graphalytics.reference.graph.SyntheticGraphGenerator.Topology;
+
+/**
+ * Tests writing, validating, reading and mapping binary graph files.
+ */
+public class CsrGraphFileTest {
+
+	private static final int NUM_VERTICES = 1000;
+	private static final int AVERAGE_DEGREE = 8;
+	private static final long SEED = 7L;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Path vertexPath;
+	private Path edgePath;
+	private String vertexFile;
+	private String edgeFile;
+	private Path cacheFile;
+
+	@Before
+	public void setUp() {
+		vertexPath = folder.getRoot().toPath().resolve("graph.v");
+		edgePath = folder.getRoot().toPath().resolve("graph.e");
+		vertexFile = vertexPath.toString();
+		edgeFile = edgePath.toString();
+		cacheFile = CsrGraphFile.getCachePath(edgeFile);
+	}
+
+	@Test
+	public void testDirectedWeightedRoundTrip() throws IOException {
+		testRoundTrip(true, true);
+	}
+
+	@Test
+	public void testDirectedUnweightedRoundTrip() throws IOException {
+		testRoundTrip(true, false);
+	}
+
+	@Test
+	public void testUndirectedWeightedRoundTrip() throws IOException {
+		testRoundTrip(false, true);
+	}
+
+	@Test
+	public void testUndirectedUnweightedRoundTrip() throws IOException {
+		testRoundTrip(false, false);
+	}
+
+	@Test
+	public void testOverwrite() throws IOException {
+		writeCache(true, false);
+		HeapCsrGraph graph = writeCache(false, true);
+		assertSameGraph(graph, CsrGraphFile.read(cacheFile, vertexFile, edgeFile));
+		assertFalse(Files.exists(cacheFile.resolveSibling(cacheFile.getFileName() + ".tmp")));
+	}
+
+	@Test
+	public void testMissingFile() throws IOException {
+		writeCache(true, true);
+		Files.delete(cacheFile);
+		assertStale();
+	}
+
+	@Test
+	public void testChangedSize() throws IOException {
+		writeCache(true, true);
+		FileTime modified = Files.getLastModifiedTime(edgePath);
+		Files.write(edgePath, new byte[] {'\n'}, StandardOpenOption.APPEND);
+		Files.setLastModifiedTime(edgePath, modified);
+		assertStale();
+	}
+
+	@Test
+	public void testChangedModificationTime() throws IOException {
+		writeCache(true, true);
+		FileTime modified = Files.getLastModifiedTime(vertexPath);
+		Files.setLastModifiedTime(vertexPath, FileTime.fromMillis(modified.toMillis() + 2000));
+		assertStale();
+	}
+
+	@Test
+	public void testCorruptPayload() throws IOException {
+		writeCache(true, true);
+		flipByte(Files.size(cacheFile) - 1);
+		// Only the header is validated without reading the whole file
+		assertTrue(CsrGraphFile.isUpToDate(cacheFile, vertexFile, edgeFile));
+		assertNull(CsrGraphFile.read(cacheFile, vertexFile, edgeFile));
+	}
+
+	@Test
+	public void testCorruptHeader() throws IOException {
+		writeCache(true, true);
+		flipByte(17);
+		assertStale();
+	}
+
+	@Test
+	public void testTruncatedPayload() throws IOException {
+		writeCache(true, true);
+		truncate(Files.size(cacheFile) - 8);
+		assertStale();
+	}
+
+	@Test
+	public void testTruncatedHeader() throws IOException {
+		writeCache(true, true);
+		truncate(CsrGraphFile.HEADER_SIZE / 2);
+		assertStale();
+	}
+
+	private void testRoundTrip(boolean directed, boolean weighted) throws IOException {
+		HeapCsrGraph graph = writeCache(directed, weighted);
+		assertTrue(CsrGraphFile.isUpToDate(cacheFile, vertexFile, edgeFile));
+		assertSameGraph(graph, CsrGraphFile.read(cacheFile, vertexFile, edgeFile));
+		assertSameGraph(graph, CsrGraphFile.map(cacheFile, vertexFile, edgeFile));
+	}
+
+	/**
+	 * Generates a graph, writes it as text files, loads it and caches it in a binary file.
+	 */
+	private HeapCsrGraph writeCache(boolean directed, boolean weighted) throws IOException {
+		new SyntheticGraphGenerator(Topology.RMAT, NUM_VERTICES, AVERAGE_DEGREE, directed, weighted, SEED)
+				.write(vertexPath, edgePath);
+		HeapCsrGraph graph = CsrGraphLoader.load(vertexFile, edgeFile, directed, weighted);
+		CsrGraphFile.write(graph, cacheFile, vertexFile, edgeFile);
+		return graph;
+	}
+
+	private void assertStale() throws IOException {
+		assertFalse(CsrGraphFile.isUpToDate(cacheFile, vertexFile, edgeFile));
+		assertNull(CsrGraphFile.read(cacheFile, vertexFile, edgeFile));
+		assertNull(CsrGraphFile.map(cacheFile, vertexFile, edgeFile));
+	}
+
+	private void flipByte(long position) throws IOException {
+		try (FileChannel channel = FileChannel.open(cacheFile, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			ByteBuffer buffer = ByteBuffer.allocate(1);
+			channel.read(buffer, position);
+			buffer.put(0, (byte) ~buffer.get(0));
+			buffer.clear();
+			channel.write(buffer, position);
+		}
+	}
+
+	private void truncate(long size) throws IOException {
+		try (FileChannel channel = FileChannel.open(cacheFile, StandardOpenOption.WRITE)) {
+			channel.truncate(size);
+		}
+	}
+}
@@ -0,0 +1,268 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.graph;
+
+import static science.atlarge.graphalytics.reference.graph.CsrGraphAssert.assertSameGraph;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import science.atlarge.graphalytics.util.graph.PropertyGraphParser;
+
+/**
+ * Compares graphs loaded by {@link CsrGraphLoader} with graphs parsed by the Graphalytics PropertyGraphParser, using
+ * byte ranges small enough to split lines, numbers and line separators at every possible position.
+ */
+public class CsrGraphLoaderTest {
+
+	private static final String VERTICES = "3\n10\n11\n\n100\n1099511627776\n";
+	private static final String EDGES =
+			"3 10 0.5\n"
+			+ "10 3 1e-3\n"
+			+ "\n"
+			+ "3 100 -2.25\n"
+			+ "11 1099511627776 3\n"
+			+ "100 11 0.30000000000000004\n"
+			+ "1099511627776 10 12345678901234567890.5\n"
+			+ "\t11  3\t1.5E+2 \n"
+			+ "10 11 .125\n"
+			+ "\n\n";
+	private static final String UNWEIGHTED_EDGES = "3 10\n10 3\n\n3 100\n 11 1099511627776 \n100 11\n\t11\t 3\r\n\n";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testDirectedAtEveryRangeBoundary() throws IOException {
+		testEveryRangeBoundary(VERTICES, EDGES, true, true);
+	}
+
+	@Test
+	public void testUndirectedAtEveryRangeBoundary() throws IOException {
+		testEveryRangeBoundary(VERTICES, EDGES, false, true);
+	}
+
+	@Test
+	public void testUnweightedAtEveryRangeBoundary() throws IOException {
+		testEveryRangeBoundary(VERTICES, UNWEIGHTED_EDGES, true, false);
+	}
+
+	@Test
+	public void testWithoutTrailingNewline() throws IOException {
+		testEveryRangeBoundary(VERTICES.trim(), EDGES.trim(), true, true);
+	}
+
+	@Test
+	public void testUnsortedVertices() throws IOException {
+		testEveryRangeBoundary("100\n3\n1099511627776\n11\n10\n", EDGES, true, true);
+	}
+
+	@Test
+	public void testCrlfLineSeparators() throws IOException {
+		File vertices = write("vertices-lf", VERTICES);
+		File edges = write("edges-lf", EDGES);
+		CsrGraph expected = CsrGraphLoader.load(vertices.getPath(), edges.getPath(), true, true);
+
+		File crlfVertices = write("vertices-crlf", VERTICES.replace("\n", "\r\n"));
+		File crlfEdges = write("edges-crlf", EDGES.replace("\n", "\r\n"));
+		for (long chunkSize = 1; chunkSize <= crlfEdges.length() + 1; chunkSize++) {
+			assertSameGraph(expected,
+					CsrGraphLoader.load(crlfVertices.getPath(), crlfEdges.getPath(), true, true, chunkSize));
+		}
+	}
+
+	@Test
+	public void testRandomGraph() throws IOException {
+		testRandomGraph(2000, 20000, 1 << 10);
+	}
+
+	@Test
+	public void testDefaultRangeSize() throws IOException {
+		// The edge file is larger than one 8 MiB byte range
+		File edges = testRandomGraph(200000, 450000, 0);
+		if (edges.length() <= 8L << 20) {
+			throw new AssertionError("Edge file does not span multiple ranges: " + edges.length() + " bytes");
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void testDuplicateSortedVertices() throws IOException {
+		load("1\n2\n2\n3\n", "1 2\n", 1 << 20);
+	}
+
+	@Test(expected = IOException.class)
+	public void testDuplicateVerticesInDifferentRanges() throws IOException {
+		load("1\n2\n3\n4\n3\n5\n", "1 2\n", 4);
+	}
+
+	@Test(expected = IOException.class)
+	public void testDuplicateUnsortedVertices() throws IOException {
+		load("3\n1\n2\n1\n", "1 2\n", 1 << 20);
+	}
+
+	@Test(expected = IOException.class)
+	public void testMalformedVertex() throws IOException {
+		load("1\n2x\n3\n", "1 2\n", 1 << 20);
+	}
+
+	@Test(expected = IOException.class)
+	public void testMalformedEdge() throws IOException {
+		load("1\n2\n3\n", "1 2\n2 three\n", 1 << 20);
+	}
+
+	@Test(expected = IOException.class)
+	public void testMissingDestination() throws IOException {
+		load("1\n2\n3\n", "1 2\n2\n", 1 << 20);
+	}
+
+	@Test(expected = IOException.class)
+	public void testUnknownVertex() throws IOException {
+		load("1\n2\n3\n", "1 2\n2 4\n", 1 << 20);
+	}
+
+	@Test(expected = IOException.class)
+	public void testOverflowingVertex() throws IOException {
+		load("1\n92233720368547758080\n", "1 1\n", 1 << 20);
+	}
+
+	@Test(expected = IOException.class)
+	public void testMalformedWeight() throws IOException {
+		CsrGraphLoader.load(write("vertices", "1\n2\n").getPath(), write("edges", "1 2 0.5\n2 1 1.0.0\n").getPath(),
+				true, true, 4);
+	}
+
+	@Test(expected = IOException.class)
+	public void testMissingWeight() throws IOException {
+		CsrGraphLoader.load(write("vertices", "1\n2\n").getPath(), write("edges", "1 2 0.5\n2 1\n").getPath(),
+				true, true, 4);
+	}
+
+	/**
+	 * Loads the graph with every range size from one byte up to the size of the largest file and compares the
+	 * result with the graph parsed by Graphalytics.
+	 */
+	private void testEveryRangeBoundary(String vertexData, String edgeData, boolean directed, boolean weighted)
+			throws IOException {
+		File vertices = write("vertices", vertexData);
+		File edges = write("edges", edgeData);
+		CsrGraph expected = parseReference(vertices, edges, directed, weighted);
+		long maxChunkSize = Math.max(vertices.length(), edges.length()) + 1;
+		for (long chunkSize = 1; chunkSize <= maxChunkSize; chunkSize++) {
+			assertSameGraph(expected,
+					CsrGraphLoader.load(vertices.getPath(), edges.getPath(), directed, weighted, chunkSize));
+		}
+	}
+
+	/**
+	 * Writes a random weighted graph with a mix of number formats and compares the loaded graph with the graph
+	 * parsed by Graphalytics. A range size of 0 selects the default range size.
+	 *
+	 * @return the edge file
+	 */
+	private File testRandomGraph(int numVertices, int numEdges, long chunkSize) throws IOException {
+		Random random = new Random(numVertices);
+		List<Long> vertexIds = new ArrayList<>();
+		for (int i = 0; i < numVertices; i++) {
+			vertexIds.add(i * 3L + 7);
+		}
+		Collections.shuffle(vertexIds, random);
+
+		StringBuilder vertexData = new StringBuilder();
+		for (long vertexId : vertexIds) {
+			vertexData.append(vertexId).append('\n');
+		}
+		StringBuilder edgeData = new StringBuilder();
+		Set<Long> seen = new HashSet<>();
+		while (seen.size() < numEdges) {
+			int source = random.nextInt(numVertices);
+			int destination = random.nextInt(numVertices);
+			long key = (long) Math.min(source, destination) * numVertices + Math.max(source, destination);
+			if (source == destination || !seen.add(key)) {
+				continue;
+			}
+			edgeData.append(vertexIds.get(source)).append(' ').append(vertexIds.get(destination)).append(' ')
+					.append(formatWeight(random)).append('\n');
+		}
+
+		File vertices = write("vertices", vertexData.toString());
+		File edges = write("edges", edgeData.toString());
+		for (boolean directed : new boolean[] {true, false}) {
+			CsrGraph actual = chunkSize == 0
+					? CsrGraphLoader.load(vertices.getPath(), edges.getPath(), directed, true)
+					: CsrGraphLoader.load(vertices.getPath(), edges.getPath(), directed, true, chunkSize);
+			assertSameGraph(parseReference(vertices, edges, directed, true), actual);
+		}
+		return edges;
+	}
+
+	private static String formatWeight(Random random) {
+		double weight = random.nextDouble() * 100;
+		switch (random.nextInt(4)) {
+			case 0:
+				return Double.toString(weight);
+			case 1:
+				return String.format(Locale.ROOT, "%.3f", weight);
+			case 2:
+				return String.format(Locale.ROOT, "%.4e", weight);
+			default:
+				return Integer.toString((int) weight);
+		}
+	}
+
+	private CsrGraph load(String vertexData, String edgeData, long chunkSize) throws IOException {
+		return CsrGraphLoader.load(write("vertices", vertexData).getPath(), write("edges", edgeData).getPath(), true,
+				false, chunkSize);
+	}
+
+	private static CsrGraph parseReference(File vertices, File edges, boolean directed, boolean weighted)
+			throws IOException {
+		PropertyGraphParser.ValueParser<?> edgeParser = weighted ? new DoubleParser() : new VoidParser();
+		return CsrGraph.fromPropertyGraph(PropertyGraphParser.parsePropertyGraph(vertices.getPath(), edges.getPath(),
+				directed, new VoidParser(), edgeParser), directed);
+	}
+
+	private File write(String name, String data) throws IOException {
+		File file = new File(folder.getRoot(), name);
+		Files.write(file.toPath(), data.getBytes(StandardCharsets.US_ASCII));
+		return file;
+	}
+
+	private static class VoidParser implements PropertyGraphParser.ValueParser<Void> {
+		@Override
+		public Void parse(String[] tokens) throws IOException {
+			return null;
+		}
+	}
+
+	private static class DoubleParser implements PropertyGraphParser.ValueParser<Double> {
+		@Override
+		public Double parse(String[] tokens) throws IOException {
+			return Double.parseDouble(tokens[0]);
+		}
+	}
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.graph;
+
+import static org.junit.Assert.assertEquals;
+import static science.atlarge.graphalytics.reference.graph.CsrGraphAssert.assertSameGraph;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import science.atlarge.graphalytics.reference.graph.SyntheticGraphGenerator.Topology;
+
+/**
+ * Compares mapped graphs with the heap graphs they were written from, using segments small enough that every
+ * section of the file spans many segments and sections start at unaligned element counts.
+ */
+public class MappedCsrGraphTest {
+
+	private static final int[] SEGMENT_SHIFTS = {3, 4, 7, 12};
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testDirectedWeighted() throws IOException {
+		testSizes(true, true);
+	}
+
+	@Test
+	public void testDirectedUnweighted() throws IOException {
+		testSizes(true, false);
+	}
+
+	@Test
+	public void testUndirectedWeighted() throws IOException {
+		testSizes(false, true);
+	}
+
+	@Test
+	public void testUndirectedUnweighted() throws IOException {
+		testSizes(false, false);
+	}
+
+	@Test
+	public void testDenseVertexIndices() throws IOException {
+		testVertexIndices(new SyntheticGraphGenerator(Topology.UNIFORM, 100, 4, true, false, 1L).generate());
+	}
+
+	@Test
+	public void testSparseVertexIndices() throws IOException {
+		StringBuilder vertices = new StringBuilder();
+		StringBuilder edges = new StringBuilder();
+		for (int i = 0; i < 100; i++) {
+			vertices.append(10 * i + 5).append('\n');
+			edges.append(10 * i + 5).append(' ').append(10 * ((7 * i + 1) % 100) + 5).append('\n');
+		}
+		Path vertexFile = folder.newFile().toPath();
+		Path edgeFile = folder.newFile().toPath();
+		Files.write(vertexFile, vertices.toString().getBytes(StandardCharsets.US_ASCII));
+		Files.write(edgeFile, edges.toString().getBytes(StandardCharsets.US_ASCII));
+		testVertexIndices(CsrGraphLoader.load(vertexFile.toString(), edgeFile.toString(), true, false));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnalignedSegments() throws IOException {
+		map(new SyntheticGraphGenerator(Topology.UNIFORM, 10, 2, true, false, 1L).generate(), 2);
+	}
+
+	private void testVertexIndices(HeapCsrGraph graph) throws IOException {
+		CsrGraph mapped = map(graph, 3);
+		for (int v = 0; v < graph.getNumberOfVertices(); v++) {
+			long id = graph.getVertexId(v);
+			assertEquals(v, mapped.getVertexIndex(id));
+			assertEquals(graph.getVertexIndex(id + 1), mapped.getVertexIndex(id + 1));
+			assertEquals(graph.getVertexIndex(id - 1), mapped.getVertexIndex(id - 1));
+		}
+	}
+
+	/**
+	 * Odd and even numbers of vertices and edges make sections end both on and off eight-byte boundaries.
+	 */
+	private void testSizes(boolean directed, boolean weighted) throws IOException {
+		for (int numVertices : new int[] {1, 2, 3, 5, 64, 333}) {
+			for (int averageDegree : new int[] {1, 3, 4}) {
+				HeapCsrGraph graph = new SyntheticGraphGenerator(Topology.UNIFORM, numVertices, averageDegree,
+						directed, weighted, numVertices).generate();
+				for (int segmentShift : SEGMENT_SHIFTS) {
+					assertSameGraph(graph, map(graph, segmentShift));
+				}
+			}
+		}
+	}
+
+	private MappedCsrGraph map(HeapCsrGraph graph, int segmentShift) throws IOException {
+		Path vertexFile = folder.newFile().toPath();
+		Path edgeFile = folder.newFile().toPath();
+		Path cacheFile = CsrGraphFile.getCachePath(edgeFile.toString());
+		CsrGraphFile.write(graph, cacheFile, vertexFile.toString(), edgeFile.toString());
+		try (FileChannel channel = FileChannel.open(cacheFile, StandardOpenOption.READ)) {
+			return new MappedCsrGraph(channel, CsrGraphFile.Header.read(channel), segmentShift);
+		} finally {
+			Files.delete(cacheFile);
+		}
+	}
+}
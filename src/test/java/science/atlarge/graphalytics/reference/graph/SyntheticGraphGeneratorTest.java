@@ -0,0 +1,83 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.graph;
+
+import static science.atlarge.graphalytics.reference.graph.CsrGraphAssert.assertSameGraph;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import science.atlarge.graphalytics.reference.graph.SyntheticGraphGenerator.Topology;
+import science.atlarge.graphalytics.reference.util.Parallel;
+
+/**
+ * Tests that generated graphs only depend on the generator parameters and seed, and that the text files written by
+ * the generator load into the same graph. Graphs span several edge sampling chunks.
+ */
+public class SyntheticGraphGeneratorTest {
+
+	private static final int NUM_VERTICES = 20000;
+	private static final int AVERAGE_DEGREE = 8;
+	private static final long SEED = 42L;
+	private static final int NUM_THREADS = 4;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@After
+	public void tearDown() {
+		Parallel.shutdown();
+	}
+
+	@Test
+	public void testIndependentOfThreadCount() {
+		for (Topology topology : Topology.values()) {
+			for (boolean directed : new boolean[] {true, false}) {
+				Parallel.startPool(1);
+				HeapCsrGraph sequential = generator(topology, directed, true).generate();
+				Parallel.shutdown();
+				Parallel.startPool(NUM_THREADS);
+				HeapCsrGraph parallel = generator(topology, directed, true).generate();
+				Parallel.shutdown();
+				assertSameGraph(sequential, parallel);
+			}
+		}
+	}
+
+	@Test
+	public void testWriteMatchesGenerate() throws IOException {
+		for (Topology topology : Topology.values()) {
+			for (boolean directed : new boolean[] {true, false}) {
+				for (boolean weighted : new boolean[] {true, false}) {
+					SyntheticGraphGenerator generator = generator(topology, directed, weighted);
+					Path vertexFile = folder.newFile().toPath();
+					Path edgeFile = folder.newFile().toPath();
+					generator.write(vertexFile, edgeFile);
+					assertSameGraph(generator.generate(),
+							CsrGraphLoader.load(vertexFile.toString(), edgeFile.toString(), directed, weighted));
+				}
+			}
+		}
+	}
+
+	private static SyntheticGraphGenerator generator(Topology topology, boolean directed, boolean weighted) {
+		return new SyntheticGraphGenerator(topology, NUM_VERTICES, AVERAGE_DEGREE, directed, weighted, SEED);
+	}
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.graph;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+
+import science.atlarge.graphalytics.reference.ReferencePlatformConfiguration.GraphStorage;
+
+/**
+ * Helpers to run tests against every graph storage.
+ */
+public final class TestGraphs {
+
+	private TestGraphs() {
+	}
+
+	/**
+	 * @return the cross product of all graph storages and the given test parameters, with the storage first
+	 */
+	public static Collection<Object[]> withEveryStorage(Collection<Object[]> parameters) {
+		Collection<Object[]> result = new ArrayList<>();
+		for (GraphStorage storage : GraphStorage.values()) {
+			for (Object[] values : parameters) {
+				Object[] combined = new Object[values.length + 1];
+				combined[0] = storage;
+				System.arraycopy(values, 0, combined, 1, values.length);
+				result.add(combined);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Moves a graph into the given storage. For mapped storage the graph is written to a temporary binary graph
+	 * file, which is deleted once it is mapped.
+	 */
+	public static CsrGraph store(HeapCsrGraph graph, GraphStorage storage) throws IOException {
+		if (storage == GraphStorage.HEAP) {
+			return graph;
+		}
+		Path directory = Files.createTempDirectory("csr-graph");
+		Path vertexFile = Files.createFile(directory.resolve("graph.v"));
+		Path edgeFile = Files.createFile(directory.resolve("graph.e"));
+		Path cacheFile = CsrGraphFile.getCachePath(edgeFile.toString());
+		try {
+			CsrGraphFile.write(graph, cacheFile, vertexFile.toString(), edgeFile.toString());
+			return CsrGraphFile.map(cacheFile, vertexFile.toString(), edgeFile.toString());
+		} finally {
+			for (Path file : new Path[] {cacheFile, vertexFile, edgeFile, directory}) {
+				delete(file.toFile());
+			}
+		}
+	}
+
+	private static void delete(File file) {
+		// Some platforms do not allow deleting a file while it is mapped
+		if (!file.delete()) {
+			file.deleteOnExit();
+		}
+	}
+}
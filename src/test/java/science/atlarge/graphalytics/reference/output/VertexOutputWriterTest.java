@@ -0,0 +1,205 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.output;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import science.atlarge.graphalytics.reference.graph.CsrGraph;
+import science.atlarge.graphalytics.reference.graph.CsrGraphLoader;
+import science.atlarge.graphalytics.reference.graph.DoubleVertexValues;
+import science.atlarge.graphalytics.reference.graph.LongVertexValues;
+import science.atlarge.graphalytics.reference.graph.VertexValues;
+
+/**
+ * Compares the output of {@link VertexOutputWriter} with the output of the PrintWriter it replaced, which printed
+ * "id value" lines for every entry of the result map in ascending order of vertex identifier.
+ */
+public class VertexOutputWriterTest {
+
+	private static final long[] VERTEX_IDS = {
+			Long.MIN_VALUE, -1000000007L, -1L, 0L, 7L, 10L, 99999999999L, 1000000000000000000L, Long.MAX_VALUE
+	};
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testLongValues() throws IOException {
+		long[] values = {Long.MAX_VALUE, Long.MIN_VALUE, 0L, -1L, 1L, 9L, 10L, -999999999999999999L, 123456789L};
+		testSingleFile(new LongVertexValues(graph(VERTEX_IDS), values));
+	}
+
+	@Test
+	public void testDoubleValues() throws IOException {
+		double[] values = {Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, -0.0, Double.MIN_VALUE,
+				Double.MAX_VALUE, 0.1, 1e7, 1.0 / 3};
+		testSingleFile(new DoubleVertexValues(graph(VERTEX_IDS), values));
+	}
+
+	@Test
+	public void testLargeOutput() throws IOException {
+		// Spans several flushes of the line buffer
+		Random random = new Random(1);
+		long[] vertexIds = new long[200000];
+		double[] values = new double[vertexIds.length];
+		for (int i = 0; i < vertexIds.length; i++) {
+			vertexIds[i] = random.nextLong();
+			values[i] = random.nextGaussian() * Math.pow(10, random.nextInt(40) - 20);
+		}
+		testSingleFile(new DoubleVertexValues(graph(vertexIds), values));
+	}
+
+	@Test
+	public void testShards() throws IOException {
+		LongVertexValues values = new LongVertexValues(graph(VERTEX_IDS), new long[VERTEX_IDS.length]);
+		Path directory = folder.getRoot().toPath().resolve("output");
+		new VertexOutputWriter(4).write(directory, values);
+
+		List<Path> files = listFiles(directory);
+		assertEquals(Arrays.asList("part-00000", "part-00001", "part-00002", "part-00003"), fileNames(files));
+		for (Path file : files) {
+			assertTrue("Empty shard " + file, Files.size(file) > 0);
+		}
+		assertArrayEquals(printWriterOutput(values), concatenate(files));
+	}
+
+	@Test
+	public void testMoreShardsThanVertices() throws IOException {
+		long[] vertexIds = {3L, 1L, 2L};
+		LongVertexValues values = new LongVertexValues(graph(vertexIds), new long[] {30L, 10L, 20L});
+		Path directory = folder.getRoot().toPath().resolve("output");
+		new VertexOutputWriter(8).write(directory, values);
+
+		List<Path> files = listFiles(directory);
+		assertEquals(Arrays.asList("part-00000", "part-00001", "part-00002"), fileNames(files));
+		assertArrayEquals(printWriterOutput(values), concatenate(files));
+	}
+
+	@Test
+	public void testRewriteShards() throws IOException {
+		LongVertexValues values = new LongVertexValues(graph(VERTEX_IDS), new long[VERTEX_IDS.length]);
+		Path directory = folder.getRoot().toPath().resolve("output");
+		new VertexOutputWriter(5).write(directory, values);
+		new VertexOutputWriter(2).write(directory, values);
+
+		List<Path> files = listFiles(directory);
+		assertEquals(Arrays.asList("part-00000", "part-00001"), fileNames(files));
+		assertArrayEquals(printWriterOutput(values), concatenate(files));
+	}
+
+	@Test
+	public void testShardsReplaceFile() throws IOException {
+		LongVertexValues values = new LongVertexValues(graph(VERTEX_IDS), new long[VERTEX_IDS.length]);
+		Path path = folder.getRoot().toPath().resolve("output");
+		new VertexOutputWriter(1).write(path, values);
+		new VertexOutputWriter(3).write(path, values);
+
+		assertTrue(Files.isDirectory(path));
+		assertArrayEquals(printWriterOutput(values), concatenate(listFiles(path)));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidShards() {
+		new VertexOutputWriter(0);
+	}
+
+	private void testSingleFile(VertexValues values) throws IOException {
+		Path file = folder.getRoot().toPath().resolve("output");
+		new VertexOutputWriter(1).write(file, values);
+		assertArrayEquals(printWriterOutput(values), Files.readAllBytes(file));
+	}
+
+	/**
+	 * Creates a graph without edges that has the given vertex identifiers.
+	 */
+	private CsrGraph graph(long[] vertexIds) throws IOException {
+		StringBuilder vertices = new StringBuilder();
+		for (long vertexId : vertexIds) {
+			vertices.append(vertexId).append('\n');
+		}
+		Path vertexFile = folder.newFile().toPath();
+		Path edgeFile = folder.newFile().toPath();
+		Files.write(vertexFile, vertices.toString().getBytes(StandardCharsets.US_ASCII));
+		return CsrGraphLoader.load(vertexFile.toString(), edgeFile.toString(), true, false);
+	}
+
+	private static byte[] printWriterOutput(VertexValues values) {
+		Map<Long, Object> sorted = new TreeMap<>();
+		for (int v = 0; v < values.size(); v++) {
+			Object value = values instanceof LongVertexValues
+					? (Object) ((LongVertexValues) values).get(v)
+					: (Object) ((DoubleVertexValues) values).get(v);
+			sorted.put(values.getVertexId(v), value);
+		}
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (PrintWriter w = new PrintWriter(bytes)) {
+			for (Map.Entry<Long, Object> entry : sorted.entrySet()) {
+				w.print(entry.getKey());
+				w.print(" ");
+				w.print(entry.getValue());
+				w.println();
+			}
+		}
+		return bytes.toByteArray();
+	}
+
+	private static List<Path> listFiles(Path directory) throws IOException {
+		List<Path> files = new ArrayList<>();
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+			for (Path file : stream) {
+				files.add(file);
+			}
+		}
+		Collections.sort(files);
+		return files;
+	}
+
+	private static List<String> fileNames(List<Path> files) {
+		List<String> names = new ArrayList<>();
+		for (Path file : files) {
+			names.add(file.getFileName().toString());
+		}
+		return names;
+	}
+
+	private static byte[] concatenate(List<Path> files) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		for (Path file : files) {
+			bytes.write(Files.readAllBytes(file));
+		}
+		return bytes.toByteArray();
+	}
+}